@@ -0,0 +1,289 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.annotations.compiletime.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.JavaFileObject;
+
+import com.kohlschutter.annotations.compiletime.LazyStatic;
+
+/**
+ * Generates initialization-on-demand holder classes for methods annotated with {@link LazyStatic}.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class LazyStaticProcessor extends AbstractProcessor {
+  private static final String SUFFIX = "LazyStatics";
+
+  /**
+   * Creates a new {@link LazyStaticProcessor}.
+   */
+  public LazyStaticProcessor() {
+    super();
+  }
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    return Collections.singleton(LazyStatic.class.getName());
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    Map<TypeElement, List<ExecutableElement>> methodsByType = new LinkedHashMap<>();
+    for (Element e : roundEnv.getElementsAnnotatedWith(LazyStatic.class)) {
+      if (e.getKind() != ElementKind.METHOD || !isValid((ExecutableElement) e)) {
+        continue;
+      }
+      methodsByType.computeIfAbsent((TypeElement) e.getEnclosingElement(), (k) -> new ArrayList<>())
+          .add((ExecutableElement) e);
+    }
+
+    for (Map.Entry<TypeElement, List<ExecutableElement>> en : methodsByType.entrySet()) {
+      try {
+        generate(en.getKey(), en.getValue());
+      } catch (IOException e) {
+        processingEnv.getMessager().printMessage(Kind.ERROR, "Could not generate " + SUFFIX
+            + " class: " + e, en.getKey());
+      }
+    }
+    return true;
+  }
+
+  private boolean isValid(ExecutableElement method) {
+    Messager messager = processingEnv.getMessager();
+    Set<Modifier> modifiers = method.getModifiers();
+    String error = null;
+    if (!modifiers.contains(Modifier.STATIC)) {
+      error = "must be static";
+    } else if (modifiers.contains(Modifier.PRIVATE)) {
+      error = "must not be private";
+    } else if (!method.getParameters().isEmpty()) {
+      error = "must not take parameters";
+    } else if (!method.getTypeParameters().isEmpty()) {
+      error = "must not declare type parameters";
+    } else if (method.getReturnType().getKind() == TypeKind.VOID) {
+      error = "must not return void";
+    } else if (declaresCheckedException(method)) {
+      error = "must not declare checked exceptions";
+    } else {
+      for (Element e = method.getEnclosingElement(); e instanceof TypeElement; e = e
+          .getEnclosingElement()) {
+        Set<Modifier> typeModifiers = e.getModifiers();
+        boolean inner = e.getKind() == ElementKind.CLASS && ((TypeElement) e).getNestingKind()
+            .isNested() && !typeModifiers.contains(Modifier.STATIC);
+        if (inner || typeModifiers.contains(Modifier.PRIVATE)) {
+          error = "must not be declared in a private or inner class";
+          break;
+        }
+      }
+    }
+
+    if (error == null) {
+      return true;
+    } else {
+      messager.printMessage(Kind.ERROR, "@" + LazyStatic.class.getSimpleName() + " method "
+          + error, method);
+      return false;
+    }
+  }
+
+  private boolean declaresCheckedException(ExecutableElement method) {
+    Elements elements = processingEnv.getElementUtils();
+    Types types = processingEnv.getTypeUtils();
+    TypeMirror runtimeException = elements.getTypeElement(RuntimeException.class.getName())
+        .asType();
+    TypeMirror error = elements.getTypeElement(Error.class.getName()).asType();
+    for (TypeMirror thrown : method.getThrownTypes()) {
+      if (!types.isAssignable(thrown, runtimeException) && !types.isAssignable(thrown, error)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String accessorName(ExecutableElement method) {
+    String name = method.getAnnotation(LazyStatic.class).value();
+    return name.isEmpty() ? method.getSimpleName().toString() : name;
+  }
+
+  private static String holderName(String accessorName) {
+    return accessorName.substring(0, 1).toUpperCase(Locale.ENGLISH) + accessorName.substring(1)
+        + "Holder";
+  }
+
+  private static String generatedSimpleName(TypeElement type) {
+    StringBuilder sb = new StringBuilder(SUFFIX);
+    for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+      sb.insert(0, e.getSimpleName());
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Renders the given type as source code, placing type annotations where the Java syntax expects
+   * them (e.g., {@code java.lang.@Nullable String} instead of {@code @Nullable java.lang.String}).
+   *
+   * @param type The type.
+   * @return The source representation.
+   */
+  private static String typeName(TypeMirror type) {
+    StringBuilder annotations = new StringBuilder();
+    for (AnnotationMirror am : type.getAnnotationMirrors()) {
+      annotations.append(am).append(' ');
+    }
+
+    switch (type.getKind()) {
+      case ARRAY:
+        return typeName(((ArrayType) type).getComponentType()) + " " + annotations + "[]";
+      case DECLARED:
+        DeclaredType declared = (DeclaredType) type;
+        String qualifiedName = ((TypeElement) declared.asElement()).getQualifiedName().toString();
+        int lastDot = qualifiedName.lastIndexOf('.');
+        StringBuilder sb = new StringBuilder();
+        sb.append(qualifiedName, 0, lastDot + 1);
+        sb.append(annotations);
+        sb.append(qualifiedName, lastDot + 1, qualifiedName.length());
+        List<? extends TypeMirror> typeArguments = declared.getTypeArguments();
+        if (!typeArguments.isEmpty()) {
+          sb.append('<');
+          for (int i = 0, n = typeArguments.size(); i < n; i++) {
+            if (i > 0) {
+              sb.append(", ");
+            }
+            sb.append(typeName(typeArguments.get(i)));
+          }
+          sb.append('>');
+        }
+        return sb.toString();
+      case WILDCARD:
+        WildcardType wildcard = (WildcardType) type;
+        if (wildcard.getExtendsBound() != null) {
+          return annotations + "? extends " + typeName(wildcard.getExtendsBound());
+        } else if (wildcard.getSuperBound() != null) {
+          return annotations + "? super " + typeName(wildcard.getSuperBound());
+        } else {
+          return annotations + "?";
+        }
+      default:
+        if (type.getKind().isPrimitive()) {
+          return annotations + type.getKind().name().toLowerCase(Locale.ENGLISH);
+        }
+        return type.toString();
+    }
+  }
+
+  private void generate(TypeElement type, List<ExecutableElement> methods) throws IOException {
+    Messager messager = processingEnv.getMessager();
+    Set<String> names = new HashSet<>();
+    for (ExecutableElement method : methods) {
+      String accessor = accessorName(method);
+      if (!SourceVersion.isIdentifier(accessor) || SourceVersion.isKeyword(accessor)) {
+        messager.printMessage(Kind.ERROR, "Invalid accessor name: " + accessor, method);
+        return;
+      } else if (!names.add(accessor) || !names.add(holderName(accessor))) {
+        messager.printMessage(Kind.ERROR, "Duplicate accessor name: " + accessor, method);
+        return;
+      }
+    }
+
+    PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+    String simpleName = generatedSimpleName(type);
+    String qualifiedName = pkg.isUnnamed() ? simpleName : pkg.getQualifiedName() + "."
+        + simpleName;
+
+    List<Element> originating = new ArrayList<>(methods);
+    originating.add(0, type);
+    JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, originating
+        .toArray(new Element[0]));
+    try (PrintWriter out = new PrintWriter(file.openWriter())) {
+      if (!pkg.isUnnamed()) {
+        out.println("package " + pkg.getQualifiedName() + ";");
+        out.println();
+      }
+      out.println("/**");
+      out.println(" * Lazily-initialized values of {@link " + type.getQualifiedName() + "}.");
+      out.println(" * <p>");
+      out.println(" * Generated by {@code " + LazyStaticProcessor.class.getName()
+          + "}; do not edit.");
+      out.println(" */");
+      out.println("@com.kohlschutter.annotations.compiletime.ExcludeFromCodeCoverageGeneratedReport"
+          + "(reason = \"generated\")");
+      out.println("final class " + simpleName + " {");
+      out.println("  private " + simpleName + "() {");
+      out.println("    throw new IllegalStateException(\"No instances\");");
+      out.println("  }");
+
+      for (ExecutableElement method : methods) {
+        String accessor = accessorName(method);
+        String holder = holderName(accessor);
+        String returnType = typeName(method.getReturnType());
+
+        out.println();
+        out.println("  private static final class " + holder + " {");
+        out.println("    static final " + returnType + " VALUE = " + type.getQualifiedName() + "."
+            + method.getSimpleName() + "();");
+        out.println("  }");
+        out.println();
+        out.println("  /**");
+        out.println("   * Returns the value of {@link " + type.getQualifiedName() + "#" + method
+            .getSimpleName() + "()}, computed upon first access.");
+        out.println("   *");
+        out.println("   * @return The value.");
+        out.println("   */");
+        out.println("  static " + returnType + " " + accessor + "() {");
+        out.println("    return " + holder + ".VALUE;");
+        out.println("  }");
+      }
+      out.println("}");
+    }
+  }
+}
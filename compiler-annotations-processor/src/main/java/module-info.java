@@ -0,0 +1,13 @@
+/**
+ * The annotation processor for {@code com.kohlschutter.annotations.compiletime}.
+ * <p>
+ * Do not add this module as a regular dependency. Instead, add it to the annotation processor path,
+ * e.g., via {@code annotationProcessorPaths} in the configuration of maven-compiler-plugin.
+ */
+module com.kohlschutter.annotations.compiletime.processor {
+  requires java.compiler;
+  requires com.kohlschutter.annotations.compiletime;
+
+  provides javax.annotation.processing.Processor
+      with com.kohlschutter.annotations.compiletime.processor.LazyStaticProcessor;
+}
@@ -0,0 +1,230 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.annotations.compiletime.processor;
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.Test;
+
+import com.kohlschutter.annotations.compiletime.LazyStatic;
+
+public class LazyStaticProcessorTest {
+  private static final class Result {
+    private final boolean success;
+    private final List<Diagnostic<? extends JavaFileObject>> errors;
+    private final Path outputDir;
+
+    Result(boolean success, List<Diagnostic<? extends JavaFileObject>> errors, Path outputDir) {
+      this.success = success;
+      this.errors = errors;
+      this.outputDir = outputDir;
+    }
+
+    String errorMessages() {
+      return errors.stream().map((d) -> d.getMessage(Locale.ENGLISH)).collect(Collectors
+          .joining("\n"));
+    }
+  }
+
+  private static final class Source extends SimpleJavaFileObject {
+    private final String code;
+
+    Source(String className, String code) {
+      super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension),
+          Kind.SOURCE);
+      this.code = code;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return code;
+    }
+  }
+
+  private static Result compile(String className, String code) throws IOException,
+      URISyntaxException {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    assumeTrue(compiler != null, "No system Java compiler available");
+
+    Path outputDir = Files.createTempDirectory("lazystatic");
+    String annotationsPath = Paths.get(LazyStatic.class.getProtectionDomain().getCodeSource()
+        .getLocation().toURI()).toString();
+
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, Arrays.asList(
+        "-classpath", annotationsPath, "-d", outputDir.toString(), "-s", outputDir.toString()),
+        null, Collections.singletonList(new Source(className, code)));
+    task.setProcessors(Collections.singletonList(new LazyStaticProcessor()));
+    boolean success = task.call();
+
+    List<Diagnostic<? extends JavaFileObject>> errors = new ArrayList<>();
+    for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+      if (d.getKind() == Diagnostic.Kind.ERROR) {
+        errors.add(d);
+      }
+    }
+    return new Result(success, errors, outputDir);
+  }
+
+  private static void assertError(String expectedMessage, String members) throws Exception {
+    Result result = compile("test.Invalid", "package test;\n"
+        + "import com.kohlschutter.annotations.compiletime.LazyStatic;\n"
+        + "public class Invalid {\n" + members + "\n}\n");
+    assertFalse(result.success);
+    assertEquals(1, result.errors.size(), result.errorMessages());
+    assertEquals(expectedMessage, result.errors.get(0).getMessage(Locale.ENGLISH));
+  }
+
+  @Test
+  public void testGeneratedHolder() throws Exception {
+    Result result = compile("test.Foo", "package test;\n"
+        + "import com.kohlschutter.annotations.compiletime.LazyStatic;\n" //
+        + "public class Foo {\n" //
+        + "  static int calls;\n" //
+        + "  @LazyStatic static String greeting() { calls++; return \"Hello\"; }\n"
+        + "  @LazyStatic(\"answer\") static int computeAnswer() { return 42; }\n" //
+        + "  static class Nested {\n" //
+        + "    @LazyStatic static java.util.List<? extends Number>[] numbers() {\n"
+        + "      return null;\n" //
+        + "    }\n" //
+        + "  }\n" //
+        + "}\n");
+    assertTrue(result.success, result.errorMessages());
+
+    String generated = new String(Files.readAllBytes(result.outputDir.resolve(
+        "test/FooLazyStatics.java")), StandardCharsets.UTF_8);
+    assertTrue(generated.contains("final class FooLazyStatics {"), generated);
+    assertTrue(generated.contains("private static final class GreetingHolder {"), generated);
+    assertTrue(generated.contains("static final java.lang.String VALUE = test.Foo.greeting();"),
+        generated);
+    assertTrue(generated.contains("static int answer() {"), generated);
+    assertTrue(Files.exists(result.outputDir.resolve("test/FooNestedLazyStatics.java")));
+
+    try (URLClassLoader cl = new URLClassLoader(new URL[] {result.outputDir.toUri().toURL()},
+        LazyStaticProcessorTest.class.getClassLoader())) {
+      Class<?> foo = cl.loadClass("test.Foo");
+      Field calls = foo.getDeclaredField("calls");
+      calls.setAccessible(true);
+
+      Method greeting = cl.loadClass("test.FooLazyStatics").getDeclaredMethod("greeting");
+      greeting.setAccessible(true);
+      assertEquals(0, calls.getInt(null));
+      assertEquals("Hello", greeting.invoke(null));
+      assertEquals("Hello", greeting.invoke(null));
+      assertEquals(1, calls.getInt(null));
+    }
+  }
+
+  @Test
+  public void testNotStatic() throws Exception {
+    assertError("@LazyStatic method must be static", "@LazyStatic String value() { return \"\"; }");
+  }
+
+  @Test
+  public void testPrivate() throws Exception {
+    assertError("@LazyStatic method must not be private",
+        "@LazyStatic private static String value() { return \"\"; }");
+  }
+
+  @Test
+  public void testParameters() throws Exception {
+    assertError("@LazyStatic method must not take parameters",
+        "@LazyStatic static String value(int x) { return \"\"; }");
+  }
+
+  @Test
+  public void testTypeParameters() throws Exception {
+    assertError("@LazyStatic method must not declare type parameters",
+        "@LazyStatic static <T> T value() { return null; }");
+  }
+
+  @Test
+  public void testVoid() throws Exception {
+    assertError("@LazyStatic method must not return void", "@LazyStatic static void value() { }");
+  }
+
+  @Test
+  public void testThrows() throws Exception {
+    assertError("@LazyStatic method must not declare checked exceptions",
+        "@LazyStatic static String value() throws java.io.IOException { return \"\"; }");
+    assertError("@LazyStatic method must not declare checked exceptions",
+        "@LazyStatic static String value() throws IllegalStateException, Exception {\n"
+            + "  return \"\";\n}");
+  }
+
+  @Test
+  public void testThrowsUnchecked() throws Exception {
+    Result result = compile("test.Unchecked", "package test;\n"
+        + "import com.kohlschutter.annotations.compiletime.LazyStatic;\n" //
+        + "public class Unchecked {\n" //
+        + "  @LazyStatic static String value() throws IllegalStateException, AssertionError {\n"
+        + "    return \"\";\n" //
+        + "  }\n" //
+        + "}\n");
+    assertTrue(result.success, result.errorMessages());
+    assertTrue(Files.exists(result.outputDir.resolve("test/UncheckedLazyStatics.java")));
+  }
+
+  @Test
+  public void testInnerClass() throws Exception {
+    assertError("@LazyStatic method must not be declared in a private or inner class",
+        "private static class Hidden { @LazyStatic static String value() { return \"\"; } }");
+  }
+
+  @Test
+  public void testDuplicateAccessor() throws Exception {
+    assertError("Duplicate accessor name: value",
+        "@LazyStatic static String value() { return \"\"; }\n"
+            + "@LazyStatic(\"value\") static String other() { return \"\"; }");
+  }
+
+  @Test
+  public void testInvalidAccessorName() throws Exception {
+    assertError("Invalid accessor name: class",
+        "@LazyStatic(\"class\") static String value() { return \"\"; }");
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.annotations.compiletime;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a static, parameterless factory method whose result should be computed once, upon first
+ * access, using the initialization-on-demand holder idiom.
+ * <p>
+ * For each top-level or nested type {@code Foo} that declares such methods, the annotation
+ * processor ({@code com.kohlschutter.annotations.compiletime.processor.LazyStaticProcessor})
+ * generates a package-private class {@code FooLazyStatics} in the same package. For each annotated
+ * method, that class contains a static accessor (named like the method, unless specified via
+ * {@link #value()}) that returns a {@code static final} field of a private holder class, which is
+ * initialized by calling the annotated method. Unlike a {@code Lazy}, there is no wrapper object
+ * and no volatile read, so the JIT can treat the value as a constant.
+ * <p>
+ * The annotated method must be static, must not be private, must not take parameters, type
+ * parameters or declare checked exceptions, and must not return {@code void}. Since the value is
+ * computed during class initialization, a failure cannot be retried: the first access throws an
+ * {@link ExceptionInInitializerError}, and subsequent accesses throw a
+ * {@link NoClassDefFoundError}.
+ * <p>
+ * The processor is shipped separately, as {@code com.kohlschutter:compiler-annotations-processor},
+ * so that it is not discovered automatically by every project that depends on these annotations
+ * (recent JDKs warn about, or skip, implicitly discovered processors). Add it to the annotation
+ * processor path explicitly, e.g., for maven-compiler-plugin:
+ *
+ * <pre>
+ * &lt;annotationProcessorPaths&gt;
+ *   &lt;path&gt;
+ *     &lt;groupId&gt;com.kohlschutter&lt;/groupId&gt;
+ *     &lt;artifactId&gt;compiler-annotations-processor&lt;/artifactId&gt;
+ *     &lt;version&gt;${kohlschutter.parent.version}&lt;/version&gt;
+ *   &lt;/path&gt;
+ * &lt;/annotationProcessorPaths&gt;
+ * </pre>
+ *
+ * @author Christian Kohlschütter
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface LazyStatic {
+  /**
+   * The name of the generated accessor method; if empty, the name of the annotated method is used.
+   *
+   * @return The accessor name.
+   */
+  String value() default "";
+}
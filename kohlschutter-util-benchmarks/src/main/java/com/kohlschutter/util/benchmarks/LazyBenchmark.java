@@ -0,0 +1,97 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kohlschutter.util.Lazy;
+
+/**
+ * Compares {@link Lazy#of(Supplier)} with the previous, {@link LegacyLazy CompletableFuture-based}
+ * engine: reading an initialized value from one thread and from many threads at once, and
+ * creating and initializing a fresh instance.
+ * <p>
+ * Run via {@code java -jar target/benchmarks.jar LazyBenchmark}.
+ *
+ * @author Christian Kohlschütter
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class LazyBenchmark {
+  private static final Supplier<Object> SUPPLIER = Object::new;
+
+  private Lazy<Object> lazy;
+  private LegacyLazy<Object> legacy;
+
+  @Setup
+  public void setup() {
+    lazy = Lazy.of(SUPPLIER);
+    lazy.get();
+    legacy = new LegacyLazy<>(SUPPLIER);
+    legacy.get();
+  }
+
+  @Benchmark
+  public Object hotGet() {
+    return lazy.get();
+  }
+
+  @Benchmark
+  public Object hotGetLegacy() {
+    return legacy.get();
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public Object hotGetContended() {
+    return lazy.get();
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public Object hotGetContendedLegacy() {
+    return legacy.get();
+  }
+
+  @Benchmark
+  public Object createAndGet() {
+    return Lazy.of(SUPPLIER).get();
+  }
+
+  @Benchmark
+  public Object createAndGetLegacy() {
+    return new LegacyLazy<>(SUPPLIER).get();
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util.benchmarks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * The {@link CompletableFuture}-based engine that {@link com.kohlschutter.util.Lazy#of(Supplier)}
+ * used before it was rewritten around a single volatile state field, kept for comparison.
+ *
+ * @param <V> The object type.
+ * @author Christian Kohlschütter
+ */
+final class LegacyLazy<V> implements Supplier<V> {
+  private final CompletableFuture<V> future = new CompletableFuture<V>();
+  private final AtomicBoolean supplied = new AtomicBoolean();
+  private final Supplier<V> supplier;
+
+  LegacyLazy(Supplier<V> supplier) {
+    this.supplier = supplier;
+  }
+
+  @Override
+  public V get() {
+    if (!future.isDone() && supplied.compareAndSet(false, true)) {
+      future.complete(supplier.get());
+    }
+    try {
+      return future.get();
+    } catch (InterruptedException | ExecutionException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
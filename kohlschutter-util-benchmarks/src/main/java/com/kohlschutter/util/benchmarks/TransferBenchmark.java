@@ -0,0 +1,133 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util.benchmarks;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kohlschutter.util.IOUtil;
+
+/**
+ * Compares copying a multi-gigabyte file via {@link IOUtil#transferAllBytes(InputStream,
+ * OutputStream)} (which uses {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)} for file streams) with
+ * {@link IOUtil#transferAllBytesNaively(InputStream, OutputStream)} and
+ * {@link IOUtil#transferAllBytesPooled(InputStream, OutputStream)}.
+ * <p>
+ * The source file is filled with random data (not sparse), so the file system cannot take any
+ * shortcuts. Its size can be changed via {@code -p sizeMiB=...}; make sure there is enough space
+ * for two copies in {@code java.io.tmpdir}.
+ * <p>
+ * Run via {@code java -jar target/benchmarks.jar TransferBenchmark}.
+ *
+ * @author Christian Kohlschütter
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferBenchmark {
+  private static final int CHUNK_SIZE = 1024 * 1024;
+
+  @Param({"4096"})
+  private int sizeMiB;
+
+  private Path source;
+  private Path target;
+
+  @Setup(Level.Trial)
+  public void createSource() throws IOException {
+    source = Files.createTempFile("transferbench", ".src");
+    target = Files.createTempFile("transferbench", ".dst");
+
+    byte[] chunk = new byte[CHUNK_SIZE];
+    ThreadLocalRandom.current().nextBytes(chunk);
+    ByteBuffer buf = ByteBuffer.wrap(chunk);
+    try (FileChannel fc = FileChannel.open(source, StandardOpenOption.WRITE)) {
+      for (int i = 0; i < sizeMiB; i++) {
+        buf.clear();
+        while (buf.hasRemaining()) {
+          fc.write(buf);
+        }
+      }
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void truncateTarget() throws IOException {
+    try (FileChannel fc = FileChannel.open(target, StandardOpenOption.WRITE)) {
+      fc.truncate(0);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteFiles() throws IOException {
+    Files.deleteIfExists(source);
+    Files.deleteIfExists(target);
+  }
+
+  @Benchmark
+  public long transferAllBytes() throws IOException {
+    try (InputStream in = new FileInputStream(source.toFile());
+        OutputStream out = new FileOutputStream(target.toFile())) {
+      return IOUtil.transferAllBytes(in, out);
+    }
+  }
+
+  @Benchmark
+  public long transferAllBytesPooled() throws IOException {
+    try (InputStream in = new FileInputStream(source.toFile());
+        OutputStream out = new FileOutputStream(target.toFile())) {
+      return IOUtil.transferAllBytesPooled(in, out);
+    }
+  }
+
+  @Benchmark
+  public long transferAllBytesNaively() throws IOException {
+    try (InputStream in = new FileInputStream(source.toFile());
+        OutputStream out = new FileOutputStream(target.toFile())) {
+      return IOUtil.transferAllBytesNaively(in, out);
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Common base for primitive-specialized lazy values, such as {@link LazyInt}.
+ * <p>
+ * The value is kept as raw {@code long} bits in a plain field, which is published by a volatile
+ * write to the state field. Once completed, reading the value does not box, and does not allocate.
+ *
+ * @author Christian Kohlschütter
+ */
+abstract class AbstractLazyPrimitive {
+  private static final AtomicReferenceFieldUpdater<AbstractLazyPrimitive, Object> STATE =
+      AtomicReferenceFieldUpdater.newUpdater(AbstractLazyPrimitive.class, Object.class, "state");
+
+  /**
+   * The value bits are being written; only held for a very short time.
+   */
+  private static final Object PUBLISHING = new Object();
+
+  /**
+   * The value bits are available.
+   */
+  private static final Object DONE = new Object();
+
+  /**
+   * Either {@code null} (not yet completed), a {@link LazyComputation}, {@link #PUBLISHING} or
+   * {@link #DONE}.
+   */
+  private volatile Object state;
+
+  private long bits;
+
+  AbstractLazyPrimitive() {
+  }
+
+  /**
+   * Supplies the value as raw {@code long} bits.
+   *
+   * @return The bits.
+   */
+  abstract long supplyBits();
+
+  /**
+   * Returns the value as raw {@code long} bits, calling {@link #supplyBits()} if this instance has
+   * not been completed yet. Only one thread at a time calls the supplier; concurrent callers wait
+   * for its result.
+   *
+   * @return The bits.
+   */
+  @SuppressWarnings("PMD.CompareObjectsWithEquals")
+  final long getBits() {
+    if (state == DONE) {
+      return bits;
+    }
+    return computeBits();
+  }
+
+  @SuppressWarnings("PMD.CompareObjectsWithEquals")
+  private long computeBits() {
+    LazyComputation marker = null;
+    while (true) {
+      Object s = state;
+      if (s == DONE) {
+        return bits;
+      } else if (s == PUBLISHING) {
+        Thread.yield();
+      } else if (s instanceof LazyComputation) {
+        ((LazyComputation) s).await();
+      } else {
+        if (marker == null) {
+          marker = new LazyComputation();
+        }
+        if (STATE.compareAndSet(this, null, marker)) {
+          break;
+        }
+      }
+    }
+
+    boolean success = false;
+    try {
+      long value = supplyBits();
+      publish(marker, value); // may fail if #completeBits was called from within the supplier
+      success = true;
+    } finally {
+      if (!success && STATE.compareAndSet(this, marker, null)) {
+        marker.finish();
+      }
+    }
+    onCompleted(); // either way, completed
+    return getBits();
+  }
+
+  /**
+   * Sets the value, unless this instance has already been completed.
+   *
+   * @param value The value as raw {@code long} bits.
+   * @return {@code true} if this invocation caused this instance to transition to a completed
+   *         state, else {@code false}
+   */
+  final boolean completeBits(long value) {
+    Object s;
+    while ((s = state) == null || s instanceof LazyComputation) {
+      if (publish(s, value)) {
+        if (s == null) {
+          onCompleted(); // otherwise, the computing thread calls it once the supplier returns
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean publish(Object expectedState, long value) {
+    if (!STATE.compareAndSet(this, expectedState, PUBLISHING)) {
+      return false;
+    }
+    bits = value;
+    state = DONE;
+    if (expectedState != null) {
+      ((LazyComputation) expectedState).finish();
+    }
+    return true;
+  }
+
+  /**
+   * Called once this instance has been completed, and the supplier is no longer in use, so it can
+   * be released, along with anything it references.
+   */
+  void onCompleted() {
+  }
+
+  /**
+   * Checks if this instance has been completed.
+   *
+   * @return {@code true} if completed.
+   */
+  @SuppressWarnings("PMD.CompareObjectsWithEquals")
+  final boolean isDone() {
+    return state == DONE;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "[supplied=" + (state != null) + "; value=" + (isDone()
+        ? valueToString() : null) + "]";
+  }
+
+  /**
+   * Returns a string representation of the completed value.
+   *
+   * @return The string.
+   */
+  abstract String valueToString();
+}
@@ -0,0 +1,223 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A {@link Lazy} whose value is computed asynchronously on an {@link Executor}.
+ * <p>
+ * The computation is started upon the first call to {@link #get()}, {@link #getAsync()} or
+ * {@link #prefetch()}. Callers can compose on the value via {@link #getAsync()} without blocking;
+ * {@link #get()} blocks until the value is available, like for any other {@link Lazy}.
+ * <p>
+ * If the computation fails (or cannot be submitted to the executor), callers waiting for it receive
+ * the failure. Unless the {@link LazyFailurePolicy} caches failures, the next call then starts a
+ * new computation.
+ *
+ * @param <V> The object type.
+ * @author Christian Kohlschütter
+ * @see Lazy#ofAsync(Supplier, Executor)
+ * @see Lazy#ofAsync(Supplier, Executor, LazyFailurePolicy)
+ */
+public final class AsyncLazy<V> implements Lazy<V> {
+  private final AtomicReference<Attempt<V>> current = new AtomicReference<>(new Attempt<>());
+  private final Supplier<V> supplier;
+  private final Executor executor;
+  private final LazyFailurePolicy failurePolicy;
+
+  /**
+   * A single attempt to compute the value.
+   */
+  @SuppressWarnings("serial")
+  private static final class Attempt<V> extends CompletableFuture<V> {
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile Thread thread;
+  }
+
+  AsyncLazy(Supplier<V> supplier, Executor executor, LazyFailurePolicy failurePolicy) {
+    this.supplier = Objects.requireNonNull(supplier);
+    this.executor = Objects.requireNonNull(executor);
+    this.failurePolicy = Objects.requireNonNull(failurePolicy);
+  }
+
+  /**
+   * Starts computing the value in the background, unless already started or completed. This call
+   * never blocks.
+   *
+   * @return This instance.
+   */
+  public AsyncLazy<V> prefetch() {
+    start();
+    return this;
+  }
+
+  private Attempt<V> start() {
+    Attempt<V> a = current.get();
+    if (!a.isDone() && a.started.compareAndSet(false, true)) {
+      try {
+        executor.execute(() -> compute(a));
+      } catch (RejectedExecutionException e) {
+        fail(a, e, false);
+      }
+    }
+    return a;
+  }
+
+  @SuppressWarnings("PMD.AvoidCatchingThrowable")
+  private void compute(Attempt<V> a) {
+    if (a.isDone()) {
+      return; // completed via #complete in the meantime
+    }
+    a.thread = Thread.currentThread();
+    try {
+      a.complete(failurePolicy.supply(supplier));
+    } catch (Throwable t) { // NOPMD
+      fail(a, t, failurePolicy.isCachingFailures() && !(t instanceof Error));
+    } finally {
+      a.thread = null; // NOPMD
+    }
+  }
+
+  private void fail(Attempt<V> a, Throwable t, boolean cache) {
+    if (!a.completeExceptionally(t)) {
+      return; // completed via #complete in the meantime (possibly from within the supplier)
+    }
+    if (!cache) {
+      current.compareAndSet(a, new Attempt<>());
+    }
+  }
+
+  /**
+   * Returns the current attempt, started if necessary, making sure we're not called from within
+   * the supplier (which would wait forever).
+   */
+  @SuppressWarnings("PMD.CompareObjectsWithEquals")
+  private Attempt<V> startNonRecursively() {
+    Attempt<V> a = start();
+    if (a.thread == Thread.currentThread()) {
+      throw new IllegalStateException("Recursive initialization");
+    }
+    return a;
+  }
+
+  /**
+   * Returns a {@link CompletionStage} for the value, starting the computation if necessary. This
+   * call never blocks.
+   *
+   * @return The completion stage.
+   */
+  public CompletionStage<V> getAsync() {
+    return start().thenApply(Function.identity()); // don't expose the original future
+  }
+
+  /**
+   * Returns the value if already available, or the given fallback value otherwise, starting the
+   * computation if necessary. This call never blocks.
+   *
+   * @param fallback The value to return if the value is not yet available.
+   * @return The value, or the fallback.
+   * @throws RuntimeException if the computation failed.
+   */
+  public V getNow(V fallback) {
+    try {
+      return start().getNow(fallback);
+    } catch (CompletionException e) {
+      throw ExceptionUtil.unwrapToUncheckedException(e);
+    }
+  }
+
+  /**
+   * Returns the value, starting the computation if necessary, and waiting for its completion.
+   *
+   * @return The value.
+   * @throws RuntimeException if the computation failed.
+   * @throws IllegalStateException if called recursively from within the supplier.
+   */
+  @Override
+  public V get() {
+    Attempt<V> a = startNonRecursively();
+    try {
+      return a.join();
+    } catch (CompletionException e) {
+      throw ExceptionUtil.unwrapToUncheckedException(e);
+    }
+  }
+
+  @Override
+  public V get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+    Attempt<V> a = startNonRecursively();
+    try {
+      return a.get(timeout, unit);
+    } catch (ExecutionException e) {
+      throw ExceptionUtil.unwrapToUncheckedException(e);
+    }
+  }
+
+  @Override
+  public V getInterruptibly() throws InterruptedException {
+    Attempt<V> a = startNonRecursively();
+    try {
+      return a.get();
+    } catch (ExecutionException e) {
+      throw ExceptionUtil.unwrapToUncheckedException(e);
+    }
+  }
+
+  /**
+   * Checks if the value is available (or if the computation failed, and failures are cached).
+   *
+   * @return {@code true} if done.
+   */
+  public boolean isDone() {
+    return current.get().isDone();
+  }
+
+  @SuppressWarnings("PMD.CompareObjectsWithEquals")
+  @Override
+  public boolean complete(V value) {
+    Attempt<V> a;
+    do {
+      a = current.get();
+      if (a.complete(value)) {
+        return true;
+      }
+    } while (a != current.get()); // attempt failed and was replaced in the meantime
+    return false;
+  }
+
+  @SuppressWarnings("null")
+  @Override
+  public String toString() {
+    Attempt<V> a = current.get();
+    return super.toString() + "[supplied=" + a.started + "; value=" + (a.isDone() && !a
+        .isCompletedExceptionally() ? a.join() : null) + "]";
+  }
+}
@@ -0,0 +1,436 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes files atomically (via a temporary sibling file that is renamed to the target), and
+ * durably, with "group commit" of concurrent writes.
+ * <p>
+ * Each write first stores the data in a temporary sibling file (see
+ * {@link PathUtil#resolveSiblingAppendingSuffix(Path, String)}), and syncs it to disk in the
+ * calling thread; concurrent writers thereby issue their file syncs together, which lets the file
+ * system coalesce them into fewer journal commits. The rename to the target path, and the sync of
+ * the parent directory that makes the rename durable, are then performed in batches: all writes
+ * that are pending at the time are renamed together, followed by a single directory sync per
+ * parent directory (rather than one per file).
+ * <p>
+ * Directory syncs are not supported on all platforms (e.g., Windows, where directories cannot be
+ * opened as files); there, they are skipped. Any other error while syncing a directory fails all
+ * writes in that directory's batch.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class AtomicFileWriter implements Closeable {
+  private final Executor executor;
+  private final ExecutorService ownExecutor;
+  private final int maxBatchSize;
+
+  private final Queue<PendingWrite> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private volatile boolean closed;
+
+  private final LongAdder committedCount = new LongAdder();
+  private final LongAdder failedCount = new LongAdder();
+  private final LongAdder batchCount = new LongAdder();
+  private final LongAdder directorySyncCount = new LongAdder();
+  private final LongAdder commitLatencyNanos = new LongAdder();
+  private final AtomicLong maxBatchSizeSeen = new AtomicLong();
+
+  private AtomicFileWriter(Executor executor, ExecutorService ownExecutor, int maxBatchSize) {
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("maxBatchSize");
+    }
+    this.executor = Objects.requireNonNull(executor);
+    this.ownExecutor = ownExecutor;
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  /**
+   * Creates a new {@link AtomicFileWriter} that commits batches of up to 1024 writes on its own
+   * daemon thread, which is stopped upon {@link #close()}.
+   *
+   * @return The new instance.
+   */
+  public static AtomicFileWriter newInstance() {
+    ExecutorService es = Executors.newSingleThreadExecutor((r) -> {
+      Thread t = new Thread(r, "AtomicFileWriter");
+      t.setDaemon(true);
+      return t;
+    });
+    return new AtomicFileWriter(es, es, 1024);
+  }
+
+  /**
+   * Creates a new {@link AtomicFileWriter} that commits batches of up to the given size on the
+   * given {@link Executor}.
+   *
+   * @param executor The executor to run commits on.
+   * @param maxBatchSize The maximum number of writes per batch.
+   * @return The new instance.
+   */
+  public static AtomicFileWriter newInstance(Executor executor, int maxBatchSize) {
+    return new AtomicFileWriter(executor, null, maxBatchSize);
+  }
+
+  /**
+   * Writes the given data to the given target file, atomically replacing any existing file.
+   * <p>
+   * The data is written to a temporary file and synced in the calling thread; the returned future
+   * completes once the file has been renamed to the target path, and the rename has been made
+   * durable.
+   *
+   * @param target The target file.
+   * @param data The data.
+   * @return A future that completes with the target path once the write is durable, or
+   *         exceptionally with an {@link IOException}.
+   * @throws IllegalStateException if this writer has been closed.
+   */
+  public CompletableFuture<Path> write(Path target, byte[] data) {
+    if (closed) {
+      throw new IllegalStateException("Closed");
+    }
+    CompletableFuture<Path> future = new CompletableFuture<>();
+    Path temp = PathUtil.resolveSiblingAppendingSuffix(target, ".tmp" + Long.toHexString(
+        ThreadLocalRandom.current().nextLong()));
+    try (FileChannel fc = FileChannel.open(temp, StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.WRITE)) {
+      ByteBuffer buf = ByteBuffer.wrap(data);
+      while (buf.hasRemaining()) {
+        fc.write(buf);
+      }
+      fc.force(true);
+    } catch (IOException e) {
+      deleteQuietly(temp);
+      failedCount.increment();
+      future.completeExceptionally(e);
+      return future;
+    }
+
+    pending.add(new PendingWrite(temp, target, future));
+    scheduleCommit();
+    return future;
+  }
+
+  /**
+   * Writes the given data to the given target file, like {@link #write(Path, byte[])}, and waits
+   * until the write is durable.
+   *
+   * @param target The target file.
+   * @param data The data.
+   * @throws IOException on error.
+   * @throws IllegalStateException if this writer has been closed.
+   */
+  public void writeAndWait(Path target, byte[] data) throws IOException {
+    try {
+      write(target, data).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw ExceptionUtil.unwrapToUncheckedException(e);
+    }
+  }
+
+  private void scheduleCommit() {
+    if (scheduled.compareAndSet(false, true)) {
+      try {
+        executor.execute(this::commitPending);
+      } catch (RejectedExecutionException e) {
+        commitPending();
+      }
+    }
+  }
+
+  private void commitPending() {
+    boolean done = false;
+    try {
+      while (true) {
+        List<PendingWrite> batch = new ArrayList<>();
+        PendingWrite w;
+        while (batch.size() < maxBatchSize && (w = pending.poll()) != null) {
+          batch.add(w);
+        }
+        if (batch.isEmpty()) {
+          scheduled.set(false);
+          if (pending.isEmpty() || !scheduled.compareAndSet(false, true)) {
+            done = true;
+            return;
+          }
+        } else {
+          commitOrFail(batch);
+        }
+      }
+    } finally {
+      if (!done) {
+        // don't leave later writes without a committer
+        scheduled.set(false);
+        if (!pending.isEmpty()) {
+          scheduleCommit();
+        }
+      }
+    }
+  }
+
+  private void commitOrFail(List<PendingWrite> batch) {
+    try {
+      commit(batch);
+    } catch (Throwable t) { // NOPMD
+      for (PendingWrite w : batch) {
+        if (!w.future.isDone()) {
+          fail(w, t);
+        }
+      }
+      throw t;
+    }
+  }
+
+  private void commit(List<PendingWrite> batch) {
+    Map<Path, List<PendingWrite>> byParent = new LinkedHashMap<>();
+    for (PendingWrite w : batch) {
+      try {
+        Files.move(w.temp, w.target, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException | RuntimeException e) {
+        deleteQuietly(w.temp);
+        fail(w, e);
+        continue;
+      }
+      Path parent = w.target.toAbsolutePath().getParent();
+      byParent.computeIfAbsent(parent, (k) -> new ArrayList<>()).add(w);
+    }
+
+    for (Map.Entry<Path, List<PendingWrite>> en : byParent.entrySet()) {
+      try {
+        syncDirectory(en.getKey());
+      } catch (IOException | RuntimeException e) {
+        for (PendingWrite w : en.getValue()) {
+          fail(w, e);
+        }
+        continue;
+      }
+      long now = System.nanoTime();
+      for (PendingWrite w : en.getValue()) {
+        committedCount.increment();
+        commitLatencyNanos.add(now - w.enqueuedAt);
+        w.future.complete(w.target);
+      }
+    }
+
+    batchCount.increment();
+    maxBatchSizeSeen.accumulateAndGet(batch.size(), Math::max);
+  }
+
+  private void syncDirectory(Path dir) throws IOException {
+    if (dir == null) {
+      return;
+    }
+    FileChannel fc;
+    try {
+      fc = FileChannel.open(dir, StandardOpenOption.READ);
+    } catch (AccessDeniedException e) {
+      return; // directories cannot be opened on this platform
+    }
+    try (FileChannel c = fc) {
+      c.force(true);
+      directorySyncCount.increment();
+    }
+  }
+
+  private void fail(PendingWrite w, Throwable t) {
+    failedCount.increment();
+    w.future.completeExceptionally(t);
+  }
+
+  private static void deleteQuietly(Path p) {
+    try {
+      Files.deleteIfExists(p);
+    } catch (IOException e) {
+      // ignore
+    }
+  }
+
+  /**
+   * Stops accepting new writes, and waits until all pending writes have been committed (if this
+   * instance uses its own thread, see {@link #newInstance()}). Writes that raced with closing may
+   * instead be committed by the writing thread itself.
+   *
+   * @throws IOException if interrupted while waiting.
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    if (ownExecutor != null) {
+      ownExecutor.shutdown();
+      try {
+        ownExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw (IOException) new IOException("Interrupted").initCause(e);
+      }
+      if (scheduled.compareAndSet(false, true)) {
+        commitPending(); // writes that raced with shutdown; otherwise, they are being committed
+      }
+    }
+  }
+
+  /**
+   * Returns a snapshot of the statistics for this writer.
+   *
+   * @return The statistics.
+   */
+  public Stats getStats() {
+    return new Stats(committedCount.sum(), failedCount.sum(), batchCount.sum(), maxBatchSizeSeen
+        .get(), directorySyncCount.sum(), commitLatencyNanos.sum());
+  }
+
+  private static final class PendingWrite {
+    private final Path temp;
+    private final Path target;
+    private final CompletableFuture<Path> future;
+    private final long enqueuedAt = System.nanoTime();
+
+    PendingWrite(Path temp, Path target, CompletableFuture<Path> future) {
+      this.temp = temp;
+      this.target = target;
+      this.future = future;
+    }
+  }
+
+  /**
+   * A snapshot of {@link AtomicFileWriter} statistics.
+   *
+   * @see AtomicFileWriter#getStats()
+   */
+  public static final class Stats {
+    private final long committedCount;
+    private final long failedCount;
+    private final long batchCount;
+    private final long maxBatchSize;
+    private final long directorySyncCount;
+    private final long totalCommitLatencyNanos;
+
+    Stats(long committedCount, long failedCount, long batchCount, long maxBatchSize,
+        long directorySyncCount, long totalCommitLatencyNanos) {
+      this.committedCount = committedCount;
+      this.failedCount = failedCount;
+      this.batchCount = batchCount;
+      this.maxBatchSize = maxBatchSize;
+      this.directorySyncCount = directorySyncCount;
+      this.totalCommitLatencyNanos = totalCommitLatencyNanos;
+    }
+
+    /**
+     * Returns the number of files that were written successfully.
+     *
+     * @return The count.
+     */
+    public long getCommittedCount() {
+      return committedCount;
+    }
+
+    /**
+     * Returns the number of writes that failed.
+     *
+     * @return The count.
+     */
+    public long getFailedCount() {
+      return failedCount;
+    }
+
+    /**
+     * Returns the number of batches committed.
+     *
+     * @return The count.
+     */
+    public long getBatchCount() {
+      return batchCount;
+    }
+
+    /**
+     * Returns the largest number of writes committed in a single batch.
+     *
+     * @return The maximum batch size.
+     */
+    public long getMaxBatchSize() {
+      return maxBatchSize;
+    }
+
+    /**
+     * Returns the average number of writes committed per batch.
+     *
+     * @return The average batch size, or {@code 0} if no batch has been committed.
+     */
+    public double getAverageBatchSize() {
+      return batchCount == 0 ? 0 : (double) committedCount / batchCount;
+    }
+
+    /**
+     * Returns the number of directory syncs performed.
+     *
+     * @return The count.
+     */
+    public long getDirectorySyncCount() {
+      return directorySyncCount;
+    }
+
+    /**
+     * Returns the total time between files being written (and synced) and their renames being
+     * durable, summed over all committed files, in nanoseconds.
+     *
+     * @return The total commit latency.
+     */
+    public long getTotalCommitLatencyNanos() {
+      return totalCommitLatencyNanos;
+    }
+
+    @Override
+    public String toString() {
+      return super.toString() + "[committed=" + committedCount + "; failed=" + failedCount
+          + "; batches=" + batchCount + "; maxBatchSize=" + maxBatchSize + "; directorySyncs="
+          + directorySyncCount + "; totalCommitLatencyMillis=" + TimeUnit.NANOSECONDS.toMillis(
+              totalCommitLatencyNanos) + "]";
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistics of a broadcast transfer.
+ *
+ * @author Christian Kohlschütter
+ * @see IOUtil#broadcastAllBytes(java.io.InputStream, java.util.concurrent.Executor,
+ *      java.io.OutputStream...)
+ */
+public final class BroadcastStats {
+  private final long bytesTransferred;
+  private final long elapsedNanos;
+  private final List<Sink> sinks;
+
+  BroadcastStats(long bytesTransferred, long elapsedNanos, List<Sink> sinks) {
+    this.bytesTransferred = bytesTransferred;
+    this.elapsedNanos = elapsedNanos;
+    this.sinks = Collections.unmodifiableList(sinks);
+  }
+
+  /**
+   * Returns the number of bytes read from the source (and written to each sink).
+   *
+   * @return The number of bytes.
+   */
+  public long getBytesTransferred() {
+    return bytesTransferred;
+  }
+
+  /**
+   * Returns the total duration of the transfer, in nanoseconds.
+   *
+   * @return The duration.
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Returns the statistics for each sink, in the order the sinks were specified.
+   *
+   * @return The per-sink statistics.
+   */
+  public List<Sink> getSinks() {
+    return sinks;
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "[bytes=" + bytesTransferred + "; elapsedMillis="
+        + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + "; sinks=" + sinks + "]";
+  }
+
+  /**
+   * Statistics for a single sink.
+   */
+  public static final class Sink {
+    private final long bytesWritten;
+    private final long writeNanos;
+
+    Sink(long bytesWritten, long writeNanos) {
+      this.bytesWritten = bytesWritten;
+      this.writeNanos = writeNanos;
+    }
+
+    /**
+     * Returns the number of bytes written to this sink.
+     *
+     * @return The number of bytes.
+     */
+    public long getBytesWritten() {
+      return bytesWritten;
+    }
+
+    /**
+     * Returns the time spent writing to (and flushing) this sink, in nanoseconds.
+     *
+     * @return The time.
+     */
+    public long getWriteNanos() {
+      return writeNanos;
+    }
+
+    /**
+     * Returns the throughput of this sink, in bytes per second of time spent writing to it.
+     *
+     * @return The throughput, or {@code 0} if nothing was written.
+     */
+    public double getBytesPerSecond() {
+      return writeNanos == 0 ? 0 : bytesWritten * 1_000_000_000.0 / writeNanos;
+    }
+
+    @Override
+    public String toString() {
+      return super.toString() + "[bytes=" + bytesWritten + "; writeMillis=" + TimeUnit.NANOSECONDS
+          .toMillis(writeNanos) + "]";
+    }
+  }
+}
@@ -0,0 +1,258 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copies one {@link InputStream} to multiple {@link OutputStream}s, reading each chunk only once,
+ * and writing to all sinks concurrently.
+ * <p>
+ * The source is read in the calling thread into a fixed number of buffers; each sink is written
+ * from its own thread. A buffer is reused once all sinks have written it, so the reader can be at
+ * most {@link #DEPTH} buffers ahead of the slowest sink.
+ *
+ * @author Christian Kohlschütter
+ * @see IOUtil#broadcastAllBytes(InputStream, Executor, OutputStream...)
+ */
+final class BroadcastTransfer {
+  static final int DEPTH = 4;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final Chunk END = new Chunk(new byte[0]);
+
+  private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(DEPTH);
+  private final SinkWorker[] workers;
+  private final CountDownLatch done;
+
+  private BroadcastTransfer(OutputStream[] outs) {
+    ByteArrayPool pool = ByteArrayPool.shared();
+    for (int i = 0; i < DEPTH; i++) {
+      free.add(new Chunk(pool.acquire(BUFFER_SIZE)));
+    }
+    workers = new SinkWorker[outs.length];
+    for (int i = 0; i < outs.length; i++) {
+      workers[i] = new SinkWorker(outs[i]);
+    }
+    done = new CountDownLatch(outs.length);
+  }
+
+  static BroadcastStats broadcast(InputStream in, Executor executor, OutputStream... outs)
+      throws IOException {
+    long start = System.nanoTime();
+    BroadcastTransfer transfer = new BroadcastTransfer(outs);
+    try {
+      long total = transfer.run(in, executor);
+      List<BroadcastStats.Sink> sinkStats = new ArrayList<>(outs.length);
+      for (SinkWorker w : transfer.workers) {
+        sinkStats.add(new BroadcastStats.Sink(w.bytesWritten, w.writeNanos));
+      }
+      return new BroadcastStats(total, System.nanoTime() - start, sinkStats);
+    } finally {
+      transfer.releaseBuffers();
+    }
+  }
+
+  private long run(InputStream in, Executor executor) throws IOException {
+    int started = 0;
+    long total = 0;
+    try {
+      for (SinkWorker w : workers) {
+        if (executor == null) {
+          Thread t = new Thread(w, "BroadcastTransfer");
+          t.setDaemon(true);
+          t.start();
+        } else {
+          executor.execute(w);
+        }
+        started++;
+      }
+
+      while (!allFailed()) {
+        Chunk c;
+        try {
+          c = free.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+        int read;
+        try {
+          read = in.read(c.buf);
+        } catch (IOException | RuntimeException e) {
+          free.add(c);
+          throw e;
+        }
+        if (read == -1) {
+          free.add(c);
+          break;
+        }
+        c.length = read;
+        if (workers.length == 0) {
+          free.add(c);
+        }
+        c.refs.set(workers.length);
+        for (SinkWorker w : workers) {
+          w.queue.add(c); // never blocks: there are at most DEPTH chunks, plus END
+        }
+        total += read;
+      }
+    } finally {
+      for (int i = 0; i < started; i++) {
+        workers[i].queue.add(END);
+      }
+      for (int i = started; i < workers.length; i++) {
+        done.countDown();
+      }
+      awaitUninterruptibly();
+    }
+
+    IOException failure = null;
+    for (SinkWorker w : workers) {
+      if (w.failure != null) {
+        if (failure == null) {
+          failure = new IOException("Could not write to all sinks", w.failure);
+        } else {
+          failure.addSuppressed(w.failure);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return total;
+  }
+
+  private boolean allFailed() {
+    for (SinkWorker w : workers) {
+      if (w.failure == null) {
+        return false;
+      }
+    }
+    return workers.length > 0;
+  }
+
+  private void awaitUninterruptibly() {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        done.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void releaseBuffers() {
+    ByteArrayPool pool = ByteArrayPool.shared();
+    Chunk c;
+    while ((c = free.poll()) != null) {
+      pool.release(c.buf);
+    }
+  }
+
+  private static final class Chunk {
+    private final byte[] buf;
+    private final AtomicInteger refs = new AtomicInteger();
+    private int length;
+
+    Chunk(byte[] buf) {
+      this.buf = buf;
+    }
+  }
+
+  private final class SinkWorker implements Runnable {
+    private final OutputStream out;
+    private final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(DEPTH + 1);
+    private volatile Throwable failure;
+    private long bytesWritten;
+    private long writeNanos;
+
+    SinkWorker(OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    @SuppressWarnings("PMD.AvoidCatchingThrowable")
+    public void run() {
+      boolean interrupted = false;
+      try {
+        Chunk c;
+        while (true) {
+          try {
+            c = queue.take();
+          } catch (InterruptedException e) {
+            // keep draining, otherwise the reader could wait forever for a free buffer
+            interrupted = true;
+            continue;
+          }
+          if (c == END) {
+            break;
+          }
+          if (failure == null) {
+            write(c);
+          }
+          if (c.refs.decrementAndGet() == 0) {
+            free.add(c);
+          }
+        }
+        if (failure == null) {
+          long time = System.nanoTime();
+          out.flush();
+          writeNanos += System.nanoTime() - time;
+        }
+      } catch (Throwable t) { // NOPMD
+        if (failure == null) {
+          failure = t;
+        }
+      } finally {
+        done.countDown();
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    @SuppressWarnings("PMD.AvoidCatchingThrowable")
+    private void write(Chunk c) {
+      long time = System.nanoTime();
+      try {
+        out.write(c.buf, 0, c.length);
+        bytesWritten += c.length;
+      } catch (Throwable t) { // NOPMD
+        failure = t;
+      } finally {
+        writeNanos += System.nanoTime() - time;
+      }
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A striped pool of {@code byte[]} buffers, in power-of-two size classes from {@link #MIN_SIZE} to
+ * {@link #MAX_SIZE}.
+ * <p>
+ * Each stripe holds a fixed number of buffers per size class (one for the {@link #shared()} pool);
+ * threads are mapped to stripes by their ID. Unlike a {@link ThreadLocal} cache, the number of
+ * pooled buffers does not grow with the number of threads (which matters with virtual threads).
+ * <p>
+ * Buffers are cleared upon release, so data from one use (which may have been passed to arbitrary,
+ * third-party streams) is never visible to the next user of the same buffer.
+ *
+ * @author Christian Kohlschütter
+ */
+final class ByteArrayPool {
+  static final int MIN_SIZE = 4096;
+  static final int MAX_SIZE = 256 * 1024;
+
+  private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_SIZE);
+  private static final int NUM_SIZE_CLASSES = Integer.numberOfTrailingZeros(MAX_SIZE) - MIN_SHIFT
+      + 1;
+
+  private static final ByteArrayPool SHARED = new ByteArrayPool(Runtime.getRuntime()
+      .availableProcessors() * 2);
+
+  private final AtomicReferenceArray<byte[]> slots;
+  private final int stripeMask;
+  private final int depth;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder discardCount = new LongAdder();
+
+  ByteArrayPool(int minStripes) {
+    this(minStripes, 1);
+  }
+
+  /**
+   * Creates a new pool.
+   *
+   * @param minStripes The minimum number of stripes (rounded up to a power of two).
+   * @param depth The number of buffers kept per stripe and size class.
+   */
+  ByteArrayPool(int minStripes, int depth) {
+    int stripes = Integer.highestOneBit(Math.max(1, minStripes - 1)) << 1;
+    this.stripeMask = stripes - 1;
+    this.depth = depth;
+    this.slots = new AtomicReferenceArray<>(stripes * NUM_SIZE_CLASSES * depth);
+  }
+
+  /**
+   * Returns the shared pool.
+   *
+   * @return The pool.
+   */
+  static ByteArrayPool shared() {
+    return SHARED;
+  }
+
+  /**
+   * Returns the smallest size class that can hold the given number of bytes, capped at
+   * {@link #MAX_SIZE}.
+   *
+   * @param size The desired size.
+   * @return The buffer size.
+   */
+  static int sizeClassFor(long size) {
+    if (size <= MIN_SIZE) {
+      return MIN_SIZE;
+    } else if (size >= MAX_SIZE) {
+      return MAX_SIZE;
+    } else {
+      return Integer.highestOneBit((int) size - 1) << 1;
+    }
+  }
+
+  private int slotIndex(int size) {
+    int sizeClass = Integer.numberOfTrailingZeros(size) - MIN_SHIFT;
+    @SuppressWarnings("deprecation")
+    long id = Thread.currentThread().getId();
+    int stripe = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & stripeMask;
+    return (stripe * NUM_SIZE_CLASSES + sizeClass) * depth;
+  }
+
+  /**
+   * Acquires a buffer of exactly the given size, which must be a size class (see
+   * {@link #sizeClassFor(long)}).
+   *
+   * @param size The buffer size.
+   * @return The buffer, either from the pool, or newly allocated.
+   */
+  byte[] acquire(int size) {
+    int index = slotIndex(size);
+    for (int i = index, end = index + depth; i < end; i++) {
+      byte[] buf;
+      if (slots.get(i) != null && (buf = slots.getAndSet(i, null)) != null) {
+        hitCount.increment();
+        return buf;
+      }
+    }
+    missCount.increment();
+    return new byte[size];
+  }
+
+  /**
+   * Clears a buffer previously obtained via {@link #acquire(int)}, and returns it to the pool. If
+   * all corresponding slots are already occupied, the buffer is discarded.
+   *
+   * @param buf The buffer.
+   */
+  void release(byte[] buf) {
+    int index = slotIndex(buf.length);
+    boolean cleared = false;
+    for (int i = index, end = index + depth; i < end; i++) {
+      if (slots.get(i) == null) {
+        if (!cleared) {
+          Arrays.fill(buf, (byte) 0);
+          cleared = true;
+        }
+        if (slots.compareAndSet(i, null, buf)) {
+          return;
+        }
+      }
+    }
+    discardCount.increment();
+  }
+
+  long getHitCount() {
+    return hitCount.sum();
+  }
+
+  long getMissCount() {
+    return missCount.sum();
+  }
+
+  long getDiscardCount() {
+    return discardCount.sum();
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A {@link MappedFile} backed by a series of {@link MappedByteBuffer}s, each covering up to 1 GB.
+ * <p>
+ * Since accessing an unmapped buffer may crash the VM, every read (and every open {@link Reader})
+ * is counted while in progress; {@link #close()} only marks the instance as closed, and the last
+ * read to finish (or {@link #close()} itself, if there is none) unmaps the buffers.
+ *
+ * @author Christian Kohlschütter
+ */
+final class ByteBufferMappedFile extends MappedFile {
+  private static final int CHUNK_SHIFT = 30;
+  private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+  private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private static final AtomicIntegerFieldUpdater<ByteBufferMappedFile> STATE =
+      AtomicIntegerFieldUpdater.newUpdater(ByteBufferMappedFile.class, "state");
+
+  /**
+   * Set in {@link #state} once closed; the remaining bits count the reads in progress.
+   */
+  private static final int CLOSED = 1 << 31;
+
+  private final long size;
+  private final MappedByteBuffer[] chunks;
+  private volatile int state;
+
+  ByteBufferMappedFile(FileChannel fc, long size) throws IOException {
+    super();
+    this.size = size;
+    MappedByteBuffer[] mapped = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT)];
+    try {
+      for (int i = 0; i < mapped.length; i++) {
+        long pos = i * CHUNK_SIZE;
+        mapped[i] = fc.map(MapMode.READ_ONLY, pos, Math.min(CHUNK_SIZE, size - pos));
+      }
+    } catch (IOException | RuntimeException e) {
+      Unmapper.unmapAll(mapped);
+      throw e;
+    }
+    this.chunks = mapped;
+  }
+
+  private void acquire() {
+    int s;
+    do {
+      s = state;
+      if ((s & CLOSED) != 0) {
+        throw new IllegalStateException("Closed");
+      }
+    } while (!STATE.compareAndSet(this, s, s + 1));
+  }
+
+  private void release() {
+    if (STATE.decrementAndGet(this) == CLOSED) {
+      Unmapper.unmapAll(chunks);
+    }
+  }
+
+  @Override
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public byte get(long offset) {
+    checkBounds(offset, 1, size);
+    acquire();
+    try {
+      return getByte(offset);
+    } finally {
+      release();
+    }
+  }
+
+  @Override
+  public void get(long offset, byte[] dst, int dstOffset, int length) {
+    checkBounds(offset, length, size);
+    checkBounds(dstOffset, length, dst.length);
+    acquire();
+    try {
+      getBytes(offset, dst, dstOffset, length);
+    } finally {
+      release();
+    }
+  }
+
+  @Override
+  public Reader reader() {
+    acquire();
+    return new PinnedReader();
+  }
+
+  private byte getByte(long offset) {
+    return chunks[(int) (offset >>> CHUNK_SHIFT)].get((int) (offset & CHUNK_MASK));
+  }
+
+  private void getBytes(long offset, byte[] dst, int dstOffset, int length) {
+    while (length > 0) {
+      ByteBuffer chunk = chunks[(int) (offset >>> CHUNK_SHIFT)].duplicate();
+      int pos = (int) (offset & CHUNK_MASK);
+      int len = Math.min(length, chunk.limit() - pos);
+      chunk.position(pos);
+      chunk.get(dst, dstOffset, len);
+      offset += len;
+      dstOffset += len;
+      length -= len;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    int s;
+    do {
+      s = state;
+      if ((s & CLOSED) != 0) {
+        return;
+      }
+    } while (!STATE.compareAndSet(this, s, s | CLOSED));
+    if (s == 0) {
+      Unmapper.unmapAll(chunks); // otherwise, the last reader unmaps
+    }
+  }
+
+  /**
+   * A {@link Reader} holding one count in {@link #state} from construction until closed.
+   * <p>
+   * The reader is confined to the thread that created it, so a read can never overlap with
+   * {@link #close()} unpinning the mapping, without any per-read synchronization.
+   */
+  private final class PinnedReader extends Reader {
+    private final Thread owner = Thread.currentThread();
+    private boolean closed; // only accessed by the owner thread
+
+    @Override
+    public byte get(long offset) {
+      checkOpen();
+      checkBounds(offset, 1, size);
+      return getByte(offset);
+    }
+
+    @Override
+    public void get(long offset, byte[] dst, int dstOffset, int length) {
+      checkOpen();
+      checkBounds(offset, length, size);
+      checkBounds(dstOffset, length, dst.length);
+      getBytes(offset, dst, dstOffset, length);
+    }
+
+    @SuppressWarnings("PMD.CompareObjectsWithEquals")
+    private void checkOwner() {
+      if (Thread.currentThread() != owner) {
+        throw new IllegalStateException("Reader is confined to thread " + owner.getName());
+      }
+    }
+
+    private void checkOpen() {
+      checkOwner();
+      if (closed) {
+        throw new IllegalStateException("Closed");
+      }
+    }
+
+    @Override
+    public void close() {
+      checkOwner();
+      if (!closed) {
+        closed = true;
+        release();
+      }
+    }
+  }
+
+  /**
+   * Unmaps direct buffers via JDK internals: {@code sun.misc.Unsafe#invokeCleaner} on Java 9 and
+   * above, or the buffer's {@code sun.misc.Cleaner} on Java 8. If neither is accessible, unmapping
+   * is left to the garbage collector.
+   */
+  private static final class Unmapper {
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+      Object unsafe = null;
+      Method invokeCleaner = null;
+      try {
+        Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        Field f = unsafeClass.getDeclaredField("theUnsafe");
+        f.setAccessible(true); // NOPMD
+        unsafe = f.get(null);
+      } catch (Exception | LinkageError e) { // NOPMD
+        invokeCleaner = null;
+      }
+      UNSAFE = unsafe;
+      INVOKE_CLEANER = invokeCleaner;
+    }
+
+    static void unmapAll(MappedByteBuffer[] buffers) {
+      for (MappedByteBuffer buf : buffers) {
+        if (buf != null) {
+          unmap(buf);
+        }
+      }
+    }
+
+    @SuppressWarnings("PMD.AvoidCatchingGenericException")
+    private static void unmap(MappedByteBuffer buf) {
+      try {
+        if (INVOKE_CLEANER != null) {
+          INVOKE_CLEANER.invoke(UNSAFE, buf);
+        } else {
+          Method cleanerMethod = buf.getClass().getMethod("cleaner");
+          cleanerMethod.setAccessible(true); // NOPMD
+          Object cleaner = cleanerMethod.invoke(buf);
+          if (cleaner != null) {
+            cleaner.getClass().getMethod("clean").invoke(cleaner);
+          }
+        }
+      } catch (Exception | LinkageError e) { // NOPMD
+        // ignore; the buffer will be unmapped upon garbage collection
+      }
+    }
+  }
+}
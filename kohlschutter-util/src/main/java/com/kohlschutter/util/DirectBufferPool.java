@@ -0,0 +1,341 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.io.Closeable;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A pool of direct (off-heap) {@link ByteBuffer}s, with explicit release.
+ * <p>
+ * Buffers are handed out in power-of-two size classes from 4 KiB to 1 MiB; each size class has its
+ * own bounded free list. Buffers of up to 64 KiB are carved out of 1 MiB slabs, which reduces the
+ * number of (relatively expensive) direct allocations. Larger requests are served by unpooled
+ * direct buffers.
+ * <p>
+ * Each allocation is represented by a {@link Lease}, which must be closed to return its buffer to
+ * the pool; the buffer must not be used afterwards. In debug mode (see
+ * {@link #newInstance(int, boolean, Consumer)}, or the system property
+ * {@code com.kohlschutter.util.directbuffers.debug} for the {@link #shared()} pool), leases that
+ * become unreachable without having been closed are reported as leaks, along with the stack trace
+ * of their allocation. Leaked buffers are not returned to the pool (they may still be in use), but
+ * are freed by the garbage collector. The {@link #shared()} pool logs leaks via
+ * {@code java.util.logging} (if available), unless a different listener is set via
+ * {@link #setSharedLeakListener(Consumer)}.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class DirectBufferPool {
+  private static final int MIN_SHIFT = 12;
+  private static final int MAX_SHIFT = 20;
+  private static final int SLAB_SIZE = 1 << MAX_SHIFT;
+  private static final int MAX_SLAB_CARVED_SIZE = 64 * 1024;
+
+  private static volatile Consumer<Throwable> sharedLeakListener = DirectBufferPool::logLeak;
+
+  private static final DirectBufferPool SHARED = new DirectBufferPool(16, SystemPropertyUtil
+      .getBooleanSystemProperty("com.kohlschutter.util.directbuffers.debug", false), (t) -> {
+        sharedLeakListener.accept(t);
+      });
+
+  private final int maxFreePerSizeClass;
+  private final boolean debug;
+  private final Consumer<Throwable> leakListener;
+
+  private final Queue<ByteBuffer>[] freeLists;
+  private final AtomicIntegerArray freeCounts;
+  private final Object slabLock = new Object();
+  private ByteBuffer slab; // guarded by slabLock
+
+  private final ReferenceQueue<Lease> leakQueue = new ReferenceQueue<>();
+  private final Map<LeakDetector, Boolean> leakDetectors = new ConcurrentHashMap<>();
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder leakCount = new LongAdder();
+
+  @SuppressWarnings("unchecked")
+  private DirectBufferPool(int maxFreePerSizeClass, boolean debug,
+      Consumer<Throwable> leakListener) {
+    if (maxFreePerSizeClass < 0) {
+      throw new IllegalArgumentException("maxFreePerSizeClass");
+    }
+    this.maxFreePerSizeClass = maxFreePerSizeClass;
+    this.debug = debug;
+    this.leakListener = Objects.requireNonNull(leakListener);
+
+    int numSizeClasses = MAX_SHIFT - MIN_SHIFT + 1;
+    this.freeLists = (Queue<ByteBuffer>[]) new Queue<?>[numSizeClasses];
+    for (int i = 0; i < numSizeClasses; i++) {
+      freeLists[i] = new ConcurrentLinkedQueue<>();
+    }
+    this.freeCounts = new AtomicIntegerArray(numSizeClasses);
+  }
+
+  /**
+   * Returns the shared pool, which keeps up to 16 free buffers per size class.
+   *
+   * @return The shared pool.
+   */
+  public static DirectBufferPool shared() {
+    return SHARED;
+  }
+
+  /**
+   * Sets the listener that receives leaks detected in the {@link #shared()} pool (only in debug
+   * mode). By default, leaks are logged via {@code java.util.logging}.
+   *
+   * @param leakListener Receives a {@link Throwable} pointing to the allocation of each leaked
+   *          lease.
+   */
+  public static void setSharedLeakListener(Consumer<Throwable> leakListener) {
+    sharedLeakListener = Objects.requireNonNull(leakListener);
+  }
+
+  private static void logLeak(Throwable t) {
+    try {
+      LeakLogger.log(t);
+    } catch (LinkageError e) { // NOPMD
+      // java.logging is not available
+    }
+  }
+
+  /**
+   * Creates a new pool.
+   *
+   * @param maxFreePerSizeClass The maximum number of free buffers to keep per size class.
+   * @param debug If {@code true}, leaks are detected (at some extra cost per allocation).
+   * @param leakListener Receives a {@link Throwable} pointing to the allocation of each leaked
+   *          lease (only in debug mode).
+   * @return The new pool.
+   */
+  public static DirectBufferPool newInstance(int maxFreePerSizeClass, boolean debug,
+      Consumer<Throwable> leakListener) {
+    return new DirectBufferPool(maxFreePerSizeClass, debug, leakListener);
+  }
+
+  private static int sizeClassIndex(int capacity) {
+    int shift = 32 - Integer.numberOfLeadingZeros(Math.max(capacity, 1 << MIN_SHIFT) - 1);
+    return shift - MIN_SHIFT;
+  }
+
+  /**
+   * Allocates a direct buffer with room for at least the given number of bytes. The buffer's
+   * position is 0, and its limit is the requested capacity (its actual capacity may be larger).
+   *
+   * @param capacity The minimum capacity.
+   * @return The lease for the buffer.
+   */
+  public Lease allocate(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity");
+    }
+    if (debug) {
+      reclaimLeaks();
+    }
+
+    ByteBuffer buf;
+    if (capacity > SLAB_SIZE) {
+      missCount.increment();
+      buf = ByteBuffer.allocateDirect(capacity);
+    } else {
+      int index = sizeClassIndex(capacity);
+      buf = freeLists[index].poll();
+      if (buf == null) {
+        missCount.increment();
+        buf = newBuffer(index);
+      } else {
+        freeCounts.decrementAndGet(index);
+        hitCount.increment();
+      }
+    }
+    buf.limit(capacity);
+
+    Lease lease = new Lease(this, buf);
+    if (debug) {
+      LeakDetector detector = new LeakDetector(lease, leakQueue);
+      leakDetectors.put(detector, Boolean.TRUE);
+      lease.detector = detector;
+    }
+    return lease;
+  }
+
+  private ByteBuffer newBuffer(int index) {
+    int size = 1 << (index + MIN_SHIFT);
+    if (size > MAX_SLAB_CARVED_SIZE) {
+      return ByteBuffer.allocateDirect(size);
+    }
+    synchronized (slabLock) {
+      if (slab == null || slab.remaining() < size) {
+        slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+      }
+      int pos = slab.position();
+      slab.limit(pos + size);
+      ByteBuffer buf = slab.slice();
+      slab.limit(slab.capacity());
+      slab.position(pos + size);
+      return buf;
+    }
+  }
+
+  private void release(ByteBuffer buf) {
+    int capacity = buf.capacity();
+    if (capacity > SLAB_SIZE) {
+      return; // unpooled
+    }
+    int index = sizeClassIndex(capacity);
+    if (freeCounts.incrementAndGet(index) > maxFreePerSizeClass) {
+      freeCounts.decrementAndGet(index);
+      return;
+    }
+    buf.clear();
+    buf.order(ByteOrder.BIG_ENDIAN);
+    freeLists[index].offer(buf);
+  }
+
+  private void reclaimLeaks() {
+    LeakDetector detector;
+    while ((detector = (LeakDetector) leakQueue.poll()) != null) {
+      if (leakDetectors.remove(detector) != null) {
+        leakCount.increment();
+        leakListener.accept(detector.allocationSite);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of allocations that were served from a free list.
+   *
+   * @return The hit count.
+   */
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * Returns the number of allocations that required a new buffer.
+   *
+   * @return The miss count.
+   */
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * Returns the number of leases that were detected as leaked (only in debug mode).
+   *
+   * @return The leak count.
+   */
+  public long getLeakCount() {
+    if (debug) {
+      reclaimLeaks();
+    }
+    return leakCount.sum();
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "[hits=" + getHitCount() + "; misses=" + getMissCount() + "; leaks="
+        + getLeakCount() + "]";
+  }
+
+  /**
+   * Tracks a lease in debug mode; enqueued if the lease becomes unreachable without being closed.
+   */
+  private static final class LeakDetector extends PhantomReference<Lease> {
+    private final Throwable allocationSite;
+
+    LeakDetector(Lease lease, ReferenceQueue<Lease> queue) {
+      super(lease, queue);
+      this.allocationSite = new IllegalStateException("Leaked direct buffer lease, allocated here");
+    }
+  }
+
+  /**
+   * Logs leaks via {@code java.util.logging}; only loaded when needed, since that module is
+   * optional.
+   */
+  private static final class LeakLogger {
+    private static final Logger LOG = Logger.getLogger(DirectBufferPool.class.getName());
+
+    static void log(Throwable t) {
+      LOG.log(Level.WARNING, "Direct buffer lease was not closed", t);
+    }
+  }
+
+  /**
+   * An allocated buffer, which is returned to the pool upon {@link #close()}.
+   */
+  public static final class Lease implements Closeable {
+    private static final AtomicReferenceFieldUpdater<Lease, ByteBuffer> BUFFER =
+        AtomicReferenceFieldUpdater.newUpdater(Lease.class, ByteBuffer.class, "buffer");
+
+    private final DirectBufferPool pool;
+    private volatile ByteBuffer buffer;
+    private LeakDetector detector;
+
+    Lease(DirectBufferPool pool, ByteBuffer buffer) {
+      this.pool = pool;
+      this.buffer = buffer;
+    }
+
+    /**
+     * Returns the leased buffer.
+     *
+     * @return The buffer.
+     * @throws IllegalStateException if already closed.
+     */
+    public ByteBuffer buffer() {
+      ByteBuffer buf = buffer;
+      if (buf == null) {
+        throw new IllegalStateException("Closed");
+      }
+      return buf;
+    }
+
+    /**
+     * Returns the buffer to the pool. Calling this method more than once has no effect.
+     */
+    @Override
+    public void close() {
+      ByteBuffer buf = BUFFER.getAndSet(this, null);
+      if (buf == null) {
+        return;
+      }
+      if (detector != null) {
+        pool.leakDetectors.remove(detector);
+        detector.clear();
+      }
+      pool.release(buf);
+    }
+  }
+}
@@ -17,6 +17,7 @@
  */
 package com.kohlschutter.util;
 
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 
 import com.kohlschutter.annotations.compiletime.ExcludeFromCodeCoverageGeneratedReport;
@@ -49,4 +50,34 @@ public final class ExceptionUtil {
       return ex;
     }
   }
+
+  /**
+   * Returns the given throwable as an unchecked exception, suitable for rethrowing from methods
+   * that cannot declare checked exceptions.
+   * <p>
+   * Like {@link #unwrapExecutionException(ExecutionException)}, the cause of an
+   * {@link ExecutionException} or {@link CompletionException} is unwrapped. {@link Error}s are
+   * thrown directly. {@link RuntimeException}s are returned as-is. If the (unwrapped) throwable is
+   * a checked exception, the original {@link CompletionException} is returned, or a new one
+   * wrapping the throwable.
+   *
+   * @param t The throwable.
+   * @return The unchecked exception.
+   */
+  public static RuntimeException unwrapToUncheckedException(Throwable t) {
+    Throwable cause = t;
+    if ((t instanceof ExecutionException || t instanceof CompletionException) && t
+        .getCause() != null) {
+      cause = t.getCause();
+    }
+    if (cause instanceof RuntimeException) {
+      return (RuntimeException) cause;
+    } else if (cause instanceof Error) {
+      throw (Error) cause;
+    } else if (t instanceof CompletionException) {
+      return (CompletionException) t;
+    } else {
+      return new CompletionException(cause);
+    }
+  }
 }
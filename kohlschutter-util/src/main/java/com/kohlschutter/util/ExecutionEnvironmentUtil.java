@@ -42,15 +42,21 @@ public final class ExecutionEnvironmentUtil {
   private static final boolean SELFTEST = //
       !System.getProperty("com.kohlschutter.selftest", "").isEmpty();
 
-  private static final Lazy<@Nullable String> VM_FLAGS = Lazy.of(
-      ExecutionEnvironmentUtil::obtainVMFlags);
-
-  private static final Lazy<Boolean> EPSILON_GC = Lazy.of(ExecutionEnvironmentUtil::initEpsilonGC);
+  private static final LazyBoolean EPSILON_GC = Lazy.ofBoolean(
+      ExecutionEnvironmentUtil::initEpsilonGC);
 
   private ExecutionEnvironmentUtil() {
     throw new IllegalStateException("No instances");
   }
 
+  /**
+   * Initialization-on-demand holder for the VM flags (the same idiom that {@code @LazyStatic}
+   * generates; written out here to keep this module free of annotation processing).
+   */
+  private static final class VMFlagsHolder {
+    static final @Nullable String VM_FLAGS = obtainVMFlags();
+  }
+
   /**
    * Checks whether the code is being run from within Eclipse.
    *
@@ -89,11 +95,11 @@ public final class ExecutionEnvironmentUtil {
    * @return {@code true} if knowingly so.
    */
   public static boolean isEpsilonGC() {
-    return EPSILON_GC.get();
+    return EPSILON_GC.getAsBoolean();
   }
 
   private static boolean initEpsilonGC() {
-    String vmFlags = VM_FLAGS.get();
+    String vmFlags = VMFlagsHolder.VM_FLAGS;
     return (vmFlags != null && vmFlags.contains("+UseEpsilonGC"));
   }
 
@@ -19,9 +19,32 @@ package com.kohlschutter.util;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import org.eclipse.jdt.annotation.Nullable;
 
 import com.kohlschutter.annotations.compiletime.ExcludeFromCodeCoverageGeneratedReport;
 
@@ -31,6 +54,22 @@ import com.kohlschutter.annotations.compiletime.ExcludeFromCodeCoverageGenerated
  * @author Christian Kohlschütter
  */
 public final class IOUtil {
+  /**
+   * The maximum number of bytes requested per {@link FileChannel#transferFrom(ReadableByteChannel,
+   * long, long)} call.
+   */
+  private static final long TRANSFER_FROM_CHUNK_SIZE = 64L * 1024 * 1024;
+
+  /**
+   * The size of the direct buffer used for channel-to-channel copies.
+   */
+  private static final int DIRECT_BUFFER_SIZE = 256 * 1024;
+
+  /**
+   * The maximum size of an array that can be allocated safely on common VMs.
+   */
+  private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
   @ExcludeFromCodeCoverageGeneratedReport(reason = "unreachable")
   private IOUtil() {
     throw new IllegalStateException("No instances");
@@ -40,16 +79,144 @@ public final class IOUtil {
    * Reads all bytes from the given {@link InputStream}.
    *
    * With Java 9 and above, {@code InputStream#readAllBytes()} is used. On older Java versions, the
-   * call is implemented like {@link #readAllBytesNaively(InputStream)}.
+   * data is read into a list of growing chunks, which are copied into the resulting array once.
    *
    * @param in The input stream.
    * @return The bytes.
    * @throws IOException on error.
+   * @see #readAllBytes(InputStream, long)
    */
   public static byte[] readAllBytes(InputStream in) throws IOException {
     return JavaReleaseShim.readAllBytes(in);
   }
 
+  /**
+   * Reads all bytes from the given {@link InputStream}, expecting the given number of bytes.
+   * <p>
+   * If the expected size is accurate, the bytes are read directly into an array of that size,
+   * without any intermediate buffer or copy. If fewer bytes are available, the array is trimmed;
+   * if more bytes are available, the remainder is read like {@link #readAllBytes(InputStream)}.
+   * If the expected size is negative (unknown) or too large for an array, the call is equivalent
+   * to {@link #readAllBytes(InputStream)}.
+   *
+   * @param in The input stream.
+   * @param expectedSize The expected number of bytes, or {@code -1} if unknown.
+   * @return The bytes.
+   * @throws IOException on error.
+   */
+  public static byte[] readAllBytes(InputStream in, long expectedSize) throws IOException {
+    if (expectedSize < 0 || expectedSize > MAX_ARRAY_SIZE) {
+      return readAllBytes(in);
+    }
+    byte[] bytes = new byte[(int) expectedSize];
+    int offset = readFully(in, bytes);
+    if (offset < bytes.length) {
+      return Arrays.copyOf(bytes, offset);
+    }
+
+    int next = in.read();
+    if (next == -1) {
+      return bytes;
+    }
+    byte[] remainder = readAllBytes(in);
+    if ((long) bytes.length + 1 + remainder.length > MAX_ARRAY_SIZE) {
+      throw new OutOfMemoryError("Required array size too large");
+    }
+    byte[] result = Arrays.copyOf(bytes, bytes.length + 1 + remainder.length);
+    result[bytes.length] = (byte) next;
+    System.arraycopy(remainder, 0, result, bytes.length + 1, remainder.length);
+    return result;
+  }
+
+  /**
+   * Reads all bytes from the given file, pre-sizing the resulting array from the file's size.
+   *
+   * @param path The file.
+   * @return The bytes.
+   * @throws IOException on error.
+   * @see #readAllBytes(InputStream, long)
+   */
+  public static byte[] readAllBytes(Path path) throws IOException {
+    try (InputStream in = Files.newInputStream(path)) {
+      return readAllBytes(in, Files.size(path));
+    }
+  }
+
+  /**
+   * Reads all bytes from the given {@link InputStream} into a list of chunks of increasing size,
+   * which are then copied into an exactly-sized array. Unlike
+   * {@link #readAllBytesNaively(InputStream)}, the peak memory use stays at about twice the
+   * number of bytes read.
+   *
+   * @param in The input stream.
+   * @return The bytes.
+   * @throws IOException on error.
+   */
+  static byte[] readAllBytesChunked(InputStream in) throws IOException {
+    List<byte[]> chunks = new ArrayList<>();
+    int chunkSize = 8192;
+    long total = 0;
+    byte[] chunk;
+    int offset;
+    do {
+      chunk = new byte[chunkSize];
+      offset = readFully(in, chunk);
+      chunks.add(chunk);
+      total += offset;
+      if (total > MAX_ARRAY_SIZE) {
+        throw new OutOfMemoryError("Required array size too large");
+      }
+      chunkSize = Math.min(chunkSize << 1, 1024 * 1024);
+    } while (offset == chunk.length);
+
+    if (chunks.size() == 1) {
+      return offset == chunk.length ? chunk : Arrays.copyOf(chunk, offset);
+    }
+    byte[] result = new byte[(int) total];
+    int pos = 0;
+    for (byte[] c : chunks) {
+      int len = (int) Math.min(c.length, total - pos);
+      System.arraycopy(c, 0, result, pos, len);
+      pos += len;
+    }
+    return result;
+  }
+
+  /**
+   * Reads from the given {@link InputStream} until the given buffer is full or the end of the
+   * stream has been reached.
+   *
+   * @param in The input stream.
+   * @param buf The buffer.
+   * @return The number of bytes read into the buffer.
+   * @throws IOException on error.
+   */
+  static int readFully(InputStream in, byte[] buf) throws IOException {
+    int offset = 0;
+    int read;
+    while (offset < buf.length && (read = in.read(buf, offset, buf.length - offset)) != -1) {
+      offset += read;
+    }
+    return offset;
+  }
+
+  /**
+   * Reads all bytes from the given {@link InputStream} into a sequence of fixed-size chunks, taken
+   * from a shared pool, without ever copying them into one contiguous array.
+   * <p>
+   * This avoids the final copy of {@link #readAllBytes(InputStream)}, and, for large inputs, the
+   * allocation of a single huge array (which, for example, the G1 garbage collector has to treat
+   * specially as a "humongous" object). The returned {@link SegmentedBytes} should be closed once
+   * no longer needed, so the chunks can be reused.
+   *
+   * @param in The input stream.
+   * @return The bytes.
+   * @throws IOException on error.
+   */
+  public static SegmentedBytes readAllBytesSegmented(InputStream in) throws IOException {
+    return SegmentedBytes.readFrom(in);
+  }
+
   /**
    * Reads all bytes from the given InputStream — naively — by reading into a temporary byte-array
    * buffer, which is then converted to a byte array.
@@ -68,8 +235,11 @@ public final class IOUtil {
    * Transfers all remaining bytes from the given {@link InputStream} to the given
    * {@link OutputStream}.
    *
-   * With Java 9 and above, {@code InputStream#transferTo()} is used. On older Java versions, the
-   * call is implemented like {@link #transferAllBytesNaively(InputStream, OutputStream)}.
+   * If both streams are plain {@link FileInputStream} and {@link FileOutputStream} instances, the
+   * transfer is performed via their channels; see
+   * {@link #transferAllBytes(ReadableByteChannel, WritableByteChannel)}. Otherwise, with Java 9
+   * and above, {@code InputStream#transferTo()} is used. On older Java versions, the call is
+   * implemented like {@link #transferAllBytesPooled(InputStream, OutputStream)}.
    *
    * @param in The source.
    * @param out The target.
@@ -77,9 +247,101 @@ public final class IOUtil {
    * @throws IOException on error.
    */
   public static long transferAllBytes(InputStream in, OutputStream out) throws IOException {
+    if (in.getClass() == FileInputStream.class && out.getClass() == FileOutputStream.class) {
+      return transferAllBytes(((FileInputStream) in).getChannel(), ((FileOutputStream) out)
+          .getChannel());
+    }
     return JavaReleaseShim.transferAllBytes(in, out);
   }
 
+  /**
+   * Transfers all remaining bytes from the given {@link ReadableByteChannel} to the given
+   * {@link WritableByteChannel}.
+   * <p>
+   * If either channel is a {@link FileChannel}, {@link FileChannel#transferTo(long, long,
+   * WritableByteChannel)} or {@link FileChannel#transferFrom(ReadableByteChannel, long, long)} is
+   * used, which allows the operating system to copy the data without moving it through user space
+   * (e.g., via {@code sendfile} or {@code copy_file_range} on Linux). The file channel's position
+   * is updated accordingly. Otherwise, the data is copied through a direct buffer taken from
+   * {@link DirectBufferPool#shared()}.
+   * <p>
+   * Both channels should be in blocking mode.
+   *
+   * @param in The source.
+   * @param out The target.
+   * @return The number of bytes transferred.
+   * @throws IOException on error.
+   */
+  public static long transferAllBytes(ReadableByteChannel in, WritableByteChannel out)
+      throws IOException {
+    return transferAllBytes(in, out, DirectBufferPool.shared());
+  }
+
+  /**
+   * Transfers all remaining bytes from the given {@link ReadableByteChannel} to the given
+   * {@link WritableByteChannel}, like {@link #transferAllBytes(ReadableByteChannel,
+   * WritableByteChannel)}, but taking any temporary buffer from the given pool.
+   * <p>
+   * Since the buffer is direct, the JDK does not need to copy the data into a temporary direct
+   * buffer of its own when reading from or writing to a file or socket channel.
+   *
+   * @param in The source.
+   * @param out The target.
+   * @param bufferPool The pool for the temporary buffer.
+   * @return The number of bytes transferred.
+   * @throws IOException on error.
+   */
+  public static long transferAllBytes(ReadableByteChannel in, WritableByteChannel out,
+      DirectBufferPool bufferPool) throws IOException {
+    long total = 0;
+    if (in instanceof FileChannel) {
+      FileChannel fc = (FileChannel) in;
+      long pos = fc.position();
+      long size = fc.size();
+      long count;
+      while (pos < size && (count = fc.transferTo(pos, size - pos, out)) > 0) {
+        pos += count;
+        total += count;
+      }
+      fc.position(pos);
+      if (pos >= fc.size()) {
+        // Already at EOF; no need to lease a buffer just to find out
+        return total;
+      }
+    } else if (out instanceof FileChannel) {
+      FileChannel fc = (FileChannel) out;
+      long pos = fc.position();
+      long count;
+      while ((count = fc.transferFrom(in, pos, TRANSFER_FROM_CHUNK_SIZE)) > 0) {
+        pos += count;
+        total += count;
+      }
+      fc.position(pos);
+    }
+
+    // Copy whatever is left (e.g., if the source file has grown in the meantime, or if the source
+    // is not a file), and detect EOF
+    return total + transferAllBytesBuffered(in, out, bufferPool);
+  }
+
+  private static long transferAllBytesBuffered(ReadableByteChannel in, WritableByteChannel out,
+      DirectBufferPool bufferPool) throws IOException {
+    try (DirectBufferPool.Lease lease = bufferPool.allocate(DIRECT_BUFFER_SIZE)) {
+      ByteBuffer buf = lease.buffer();
+      long total = 0;
+      int read;
+      while ((read = in.read(buf)) != -1) {
+        buf.flip();
+        while (buf.hasRemaining()) {
+          out.write(buf);
+        }
+        buf.clear();
+        total += read;
+      }
+      return total;
+    }
+  }
+
   /**
    * Reads all bytes from the given {@link InputStream} — naively — by reading into a temporary
    * byte-array buffer, which is then written to the given {@link OutputStream}.
@@ -100,6 +362,159 @@ public final class IOUtil {
     return total;
   }
 
+  /**
+   * Transfers all remaining bytes from the given {@link InputStream} to the given
+   * {@link OutputStream}, using a temporary buffer from a shared pool.
+   * <p>
+   * The transfer starts with a small buffer (or one sized by {@link InputStream#available()}), and
+   * switches to twice as large a buffer whenever a read fills the current one completely, up to 256
+   * KiB. This keeps small transfers cheap while reducing the number of reads for large streams.
+   * Buffers are cleared and returned to the pool afterwards, so repeated transfers do not allocate
+   * (see {@link #getBufferPoolStats()}), and the transferred data is not retained.
+   *
+   * @param in The source.
+   * @param out The target.
+   * @return The number of bytes transferred.
+   * @throws IOException on error.
+   */
+  public static long transferAllBytesPooled(InputStream in, OutputStream out) throws IOException {
+    ByteArrayPool pool = ByteArrayPool.shared();
+    byte[] buf = pool.acquire(ByteArrayPool.sizeClassFor(in.available()));
+    try {
+      long total = 0;
+      int read;
+      while ((read = in.read(buf)) != -1) {
+        total += read;
+        out.write(buf, 0, read);
+        if (read == buf.length && buf.length < ByteArrayPool.MAX_SIZE) {
+          byte[] larger = pool.acquire(buf.length << 1);
+          pool.release(buf);
+          buf = larger;
+        }
+      }
+      return total;
+    } finally {
+      pool.release(buf);
+    }
+  }
+
+  /**
+   * Returns a new CRC-32C {@link Checksum}: {@code java.util.zip.CRC32C} (which is typically
+   * hardware-accelerated) on Java 9 and above, or a pure-Java implementation on Java 8.
+   *
+   * @return The checksum.
+   */
+  public static Checksum newCRC32C() {
+    return JavaReleaseShim.newCRC32C();
+  }
+
+  /**
+   * Transfers all remaining bytes from the given {@link InputStream} to the given
+   * {@link OutputStream}, like {@link #transferAllBytesPooled(InputStream, OutputStream)}, while
+   * computing the given checksums/digests of the transferred data in the same pass.
+   * <p>
+   * Supported algorithms are {@code CRC32C} (see {@link #newCRC32C()}), {@code CRC32},
+   * {@code Adler32} (each yielding a 4-byte big-endian digest), and any {@link MessageDigest}
+   * algorithm, such as {@code SHA-256}.
+   *
+   * @param in The source.
+   * @param out The target.
+   * @param algorithms The algorithm names.
+   * @return The number of bytes transferred, and the digests.
+   * @throws IOException on error.
+   * @throws IllegalArgumentException if an algorithm is not supported.
+   */
+  public static TransferResult transferAllBytesWithDigests(InputStream in, OutputStream out,
+      String... algorithms) throws IOException {
+    Object[] digesters = new Object[algorithms.length];
+    for (int i = 0; i < algorithms.length; i++) {
+      digesters[i] = newDigester(algorithms[i]);
+    }
+
+    long transferred = transferAllBytesPooled(in, new DigestingOutputStream(out, digesters));
+
+    Map<String, byte[]> digests = new LinkedHashMap<>();
+    for (int i = 0; i < algorithms.length; i++) {
+      Object d = digesters[i];
+      byte[] digest;
+      if (d instanceof Checksum) {
+        int value = (int) ((Checksum) d).getValue();
+        digest = new byte[] {
+            (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+      } else {
+        digest = ((MessageDigest) d).digest();
+      }
+      digests.put(algorithms[i], digest);
+    }
+    return new TransferResult(transferred, digests);
+  }
+
+  private static Object newDigester(String algorithm) {
+    if ("CRC32C".equalsIgnoreCase(algorithm)) {
+      return newCRC32C();
+    } else if ("CRC32".equalsIgnoreCase(algorithm)) {
+      return new CRC32();
+    } else if ("Adler32".equalsIgnoreCase(algorithm)) {
+      return new Adler32();
+    }
+    try {
+      return MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalArgumentException("Unsupported algorithm: " + algorithm, e);
+    }
+  }
+
+  /**
+   * Transfers all remaining bytes from the given {@link InputStream} to all of the given
+   * {@link OutputStream}s, reading each chunk only once and writing to the sinks concurrently.
+   * <p>
+   * Each sink is written (and finally flushed) from its own task. The source is read in the calling
+   * thread into a small, fixed set of shared buffers, so reading never gets more than a few buffers
+   * ahead of the slowest sink, and memory use does not depend on the stream length.
+   * <p>
+   * If a sink fails, the remaining sinks still receive all data; an {@link IOException} is thrown
+   * at the end, with the failure(s) as cause (and suppressed exceptions). If all sinks fail,
+   * reading stops early. The streams are not closed.
+   *
+   * @param in The source.
+   * @param executor The executor to run the per-sink tasks on, or {@code null} to use a new daemon
+   *          thread per sink. The executor must be able to run all tasks concurrently.
+   * @param outs The targets.
+   * @return The number of bytes transferred, and per-sink statistics.
+   * @throws IOException on error.
+   */
+  public static BroadcastStats broadcastAllBytes(InputStream in, @Nullable Executor executor,
+      OutputStream... outs) throws IOException {
+    return BroadcastTransfer.broadcast(in, executor, outs);
+  }
+
+  /**
+   * Returns statistics about the buffer pool used by
+   * {@link #transferAllBytesPooled(InputStream, OutputStream)} (and related methods).
+   *
+   * @return The statistics.
+   */
+  public static BufferPoolStats getBufferPoolStats() {
+    ByteArrayPool pool = ByteArrayPool.shared();
+    return new BufferPoolStats(pool.getHitCount(), pool.getMissCount(), pool.getDiscardCount());
+  }
+
+  /**
+   * Maps the given file into memory, read-only. The file may be larger than 2 GB.
+   * <p>
+   * The mapping stays valid until the returned {@link MappedFile} is closed, which unmaps it as
+   * soon as no other thread is reading from it.
+   *
+   * @param path The file.
+   * @return The mapped file.
+   * @throws IOException on error.
+   */
+  public static MappedFile mapReadOnly(Path path) throws IOException {
+    try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+      return new ByteBufferMappedFile(fc, fc.size());
+    }
+  }
+
   /**
    * Deletes a file.
    *
@@ -113,4 +528,122 @@ public final class IOUtil {
       throw new IOException("Could not delete file: " + f);
     }
   }
+
+  /**
+   * A snapshot of buffer pool statistics.
+   *
+   * @see IOUtil#getBufferPoolStats()
+   */
+  public static final class BufferPoolStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long discardCount;
+
+    BufferPoolStats(long hitCount, long missCount, long discardCount) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.discardCount = discardCount;
+    }
+
+    /**
+     * Returns the number of buffer requests that were served from the pool.
+     *
+     * @return The hit count.
+     */
+    public long getHitCount() {
+      return hitCount;
+    }
+
+    /**
+     * Returns the number of buffer requests that required a new allocation.
+     *
+     * @return The miss count.
+     */
+    public long getMissCount() {
+      return missCount;
+    }
+
+    /**
+     * Returns the number of released buffers that were not kept because the pool was full.
+     *
+     * @return The discard count.
+     */
+    public long getDiscardCount() {
+      return discardCount;
+    }
+
+    @Override
+    public String toString() {
+      return super.toString() + "[hits=" + hitCount + "; misses=" + missCount + "; discards="
+          + discardCount + "]";
+    }
+  }
+
+  /**
+   * The result of {@link IOUtil#transferAllBytesWithDigests(InputStream, OutputStream, String...)}.
+   */
+  public static final class TransferResult {
+    private final long bytesTransferred;
+    private final Map<String, byte[]> digests;
+
+    TransferResult(long bytesTransferred, Map<String, byte[]> digests) {
+      this.bytesTransferred = bytesTransferred;
+      this.digests = digests;
+    }
+
+    /**
+     * Returns the number of bytes transferred.
+     *
+     * @return The number of bytes.
+     */
+    public long getBytesTransferred() {
+      return bytesTransferred;
+    }
+
+    /**
+     * Returns the digest computed for the given algorithm, as specified in the transfer call.
+     *
+     * @param algorithm The algorithm name.
+     * @return A copy of the digest, or {@code null} if no digest was computed for that name.
+     */
+    public byte[] getDigest(String algorithm) {
+      byte[] digest = digests.get(algorithm);
+      return digest == null ? null : digest.clone();
+    }
+
+    @Override
+    public String toString() {
+      return super.toString() + "[bytesTransferred=" + bytesTransferred + "; algorithms="
+          + digests.keySet() + "]";
+    }
+  }
+
+  /**
+   * Updates checksums/digests with everything written, before passing it on.
+   */
+  private static final class DigestingOutputStream extends FilterOutputStream {
+    private final Object[] digesters;
+
+    DigestingOutputStream(OutputStream out, Object[] digesters) {
+      super(out);
+      this.digesters = digesters;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      for (Object d : digesters) {
+        if (d instanceof Checksum) {
+          ((Checksum) d).update(b, off, len);
+        } else {
+          ((MessageDigest) d).update(b, off, len);
+        }
+      }
+      out.write(b, off, len);
+    }
+  }
 }
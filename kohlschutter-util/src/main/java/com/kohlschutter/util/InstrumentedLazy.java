@@ -0,0 +1,99 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * A named {@link Lazy} that records metrics via {@link LazyInstrumentation}.
+ *
+ * @param <V> The object type.
+ * @author Christian Kohlschütter
+ */
+final class InstrumentedLazy<V> extends Lazy.BaseImpl<V> {
+  private final String name;
+  private final LazyMetrics metrics;
+  private final LazyFailurePolicy failurePolicy;
+  private Supplier<V> supplier; // cleared once completed
+
+  InstrumentedLazy(String name, Supplier<V> supplier, LazyFailurePolicy failurePolicy) {
+    super();
+    this.name = name;
+    this.metrics = LazyInstrumentation.metricsFor(name);
+    this.failurePolicy = failurePolicy;
+    this.supplier = () -> supplyInstrumented(supplier);
+  }
+
+  private V supplyInstrumented(Supplier<V> s) {
+    Object event = LazyEvents.beginInitialization();
+    long time = System.nanoTime();
+    boolean success = false;
+    try {
+      V value = s.get();
+      success = true;
+      return value;
+    } finally {
+      metrics.recordInitialization(System.nanoTime() - time, !success);
+      LazyEvents.endInitialization(event, name, !success);
+    }
+  }
+
+  @Override
+  public V get() {
+    return getOrCompute(supplier, failurePolicy);
+  }
+
+  @Override
+  public V get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+    return getOrCompute(supplier, failurePolicy, Math.max(0, unit.toNanos(timeout)), true);
+  }
+
+  @Override
+  public V getInterruptibly() throws InterruptedException {
+    try {
+      return getOrCompute(supplier, failurePolicy, -1, true);
+    } catch (TimeoutException e) {
+      throw new IllegalStateException(e); // unreachable
+    }
+  }
+
+  @Override
+  boolean await(LazyComputation computation, long nanos, boolean interruptible)
+      throws InterruptedException {
+    Object event = LazyEvents.beginWait();
+    long time = System.nanoTime();
+    try {
+      return super.await(computation, nanos, interruptible);
+    } finally {
+      metrics.recordWait(System.nanoTime() - time);
+      LazyEvents.endWait(event, name);
+    }
+  }
+
+  @Override
+  void onCompleted() {
+    supplier = null; // NOPMD
+  }
+
+  @Override
+  public String toString() {
+    return name + ":" + super.toString();
+  }
+}
@@ -20,6 +20,8 @@ package com.kohlschutter.util;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
 
 /**
  * The implementations in this class may be overridden for older Java versions.
@@ -50,4 +52,8 @@ final class JavaReleaseShim {
   static long transferAllBytes(InputStream in, OutputStream out) throws IOException {
     return in.transferTo(out);
   }
+
+  static Checksum newCRC32C() {
+    return new CRC32C();
+  }
 }
@@ -17,10 +17,18 @@
  */
 package com.kohlschutter.util;
 
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
 /**
@@ -33,36 +41,238 @@ import java.util.function.Supplier;
 public interface Lazy<V> extends Supplier<V>, Consumer<V> {
   /**
    * A {@link Lazy} implementation that can be set via {@link #complete(Object)}.
+   * <p>
+   * The state of the instance is kept in a single volatile field, which either holds {@code null}
+   * (not yet completed), a marker indicating that a value is currently being computed, or the
+   * value itself. Once completed, {@link #get()} is just a single field read.
    *
    * @param <V> The object type.
    * @author Christian Kohlschütter
    */
   class BaseImpl<V> implements Lazy<V> {
-    final CompletableFuture<V> future = new CompletableFuture<V>();
-    final AtomicBoolean supplied = new AtomicBoolean();
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<BaseImpl, Object> STATE =
+        AtomicReferenceFieldUpdater.newUpdater(BaseImpl.class, Object.class, "state");
 
-    private BaseImpl() {
+    /**
+     * Placeholder for a completed {@code null} value.
+     */
+    private static final Object NULL = new Object();
+
+    private volatile Object state;
+
+    BaseImpl() {
     }
 
     @Override
     public V get() {
-      @SuppressWarnings("null")
-      V val = future.getNow(null);
-      future.complete(val);
-      return val;
+      Object s = state;
+      if (s == null) {
+        STATE.compareAndSet(this, null, NULL);
+        s = state;
+      }
+      return unmask(s);
+    }
+
+    /**
+     * Returns the object, like {@link #get()}; this implementation never waits.
+     */
+    @Override
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      return get();
+    }
+
+    /**
+     * Returns the completed value, or calls the given supplier to compute it. Only one thread at a
+     * time calls the supplier; concurrent callers wait for its result.
+     * <p>
+     * If the supplier throws an exception, it is rethrown as-is, and the given
+     * {@link LazyFailurePolicy} determines whether it is cached or whether the instance is reset to
+     * its uncompleted state, so the next caller tries again.
+     *
+     * @param supplier The supplier.
+     * @param failurePolicy The failure policy.
+     * @return The value.
+     */
+    final V getOrCompute(Supplier<V> supplier, LazyFailurePolicy failurePolicy) {
+      Object s = state;
+      if (s != null && !(s instanceof LazyComputation)) {
+        return unmask(s);
+      }
+      try {
+        return compute(supplier, failurePolicy, -1, false);
+      } catch (InterruptedException | TimeoutException e) {
+        throw new IllegalStateException(e); // unreachable
+      }
+    }
+
+    /**
+     * Like {@link #getOrCompute(Supplier, LazyFailurePolicy)}, but waits at most the given time for
+     * another thread computing the value, and optionally responds to interrupts while waiting.
+     * <p>
+     * If the calling thread computes the value itself, the time spent in the supplier is not
+     * bounded.
+     *
+     * @param supplier The supplier.
+     * @param failurePolicy The failure policy.
+     * @param timeoutNanos The maximum time to wait, in nanoseconds, or {@code -1} to wait forever.
+     * @param interruptible If {@code true}, an {@link InterruptedException} is thrown if the thread
+     *          is interrupted while waiting.
+     * @return The value.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws TimeoutException if the wait timed out.
+     */
+    final V getOrCompute(Supplier<V> supplier, LazyFailurePolicy failurePolicy, long timeoutNanos,
+        boolean interruptible) throws InterruptedException, TimeoutException {
+      Object s = state;
+      if (s != null && !(s instanceof LazyComputation)) {
+        return unmask(s);
+      }
+      return compute(supplier, failurePolicy, timeoutNanos, interruptible);
+    }
+
+    @SuppressWarnings("PMD.AvoidCatchingThrowable")
+    private V compute(Supplier<V> supplier, LazyFailurePolicy failurePolicy, long timeoutNanos,
+        boolean interruptible) throws InterruptedException, TimeoutException {
+      // only meaningful if timeoutNanos > 0; System.nanoTime() may be negative
+      long deadline = timeoutNanos > 0 ? System.nanoTime() + timeoutNanos : 0;
+      Object s;
+      LazyComputation marker = null;
+      while (true) {
+        s = state;
+        if (s == null) {
+          if (marker == null) {
+            marker = new LazyComputation();
+          }
+          if (STATE.compareAndSet(this, null, marker)) {
+            break;
+          }
+        } else if (s instanceof LazyComputation) {
+          LazyComputation c = (LazyComputation) s;
+          Throwable failure = c.getFailure();
+          if (failure != null) {
+            throw ExceptionUtil.unwrapToUncheckedException(failure);
+          }
+          long nanos;
+          if (timeoutNanos < 0) {
+            nanos = -1; // wait forever
+          } else if (timeoutNanos == 0) {
+            nanos = 0; // don't wait at all
+          } else {
+            nanos = Math.max(0, deadline - System.nanoTime());
+          }
+          if (!await(c, nanos, interruptible)) {
+            throw new TimeoutException();
+          }
+        } else {
+          return unmask(s);
+        }
+      }
+
+      V value;
+      try {
+        value = failurePolicy.supply(supplier);
+      } catch (Throwable t) { // NOPMD
+        if (failurePolicy.isCachingFailures() && !(t instanceof Error)
+            && state == marker) { // NOPMD
+          marker.fail(t);
+        } else {
+          transition(marker, null);
+        }
+        throw t;
+      }
+      if (transition(marker, mask(value))) {
+        onCompleted();
+      }
+
+      // the value may have been set via #complete from within supplier.get()
+      return unmask(state);
+    }
+
+    private boolean transition(LazyComputation marker, Object newState) {
+      if (STATE.compareAndSet(this, marker, newState)) {
+        marker.finish();
+        return true;
+      } else {
+        return false;
+      }
+    }
+
+    /**
+     * Waits for the given computation, which is being performed by another thread.
+     *
+     * @param computation The computation.
+     * @param nanos The maximum time to wait, in nanoseconds, or {@code -1} to wait forever.
+     * @param interruptible If {@code true}, an {@link InterruptedException} is thrown if the thread
+     *          is interrupted while waiting.
+     * @return {@code true} if the computation has finished, {@code false} if the wait timed out.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    boolean await(LazyComputation computation, long nanos, boolean interruptible)
+        throws InterruptedException {
+      return computation.await(nanos, interruptible);
+    }
+
+    /**
+     * Called after this instance transitioned to a completed state with a value.
+     */
+    void onCompleted() {
+    }
+
+    /**
+     * Checks if the given {@link Lazy} is known to hold its final value, so that its
+     * {@link #get()} neither computes nor blocks.
+     *
+     * @param lazy The instance to check.
+     * @return {@code true} if completed.
+     */
+    static boolean isCompleted(Lazy<?> lazy) {
+      if (lazy instanceof WithSupplied) {
+        return true;
+      } else if (lazy instanceof BaseImpl) {
+        Object s = ((BaseImpl<?>) lazy).state;
+        return s != null && !(s instanceof LazyComputation);
+      } else {
+        return false;
+      }
     }
 
     @Override
     public boolean complete(V value) {
-      supplied.set(true); // NOTE: We do not compareAndSet here to allow #set from within
-                          // supplier.get
-      return future.complete(value);
+      Object newState = mask(value);
+      Object s;
+      while ((s = state) == null || s instanceof LazyComputation) {
+        if (s != null && ((LazyComputation) s).getFailure() != null) {
+          return false; // failure is cached
+        }
+        if (STATE.compareAndSet(this, s, newState)) {
+          if (s != null) {
+            ((LazyComputation) s).finish();
+          }
+          onCompleted();
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static Object mask(Object value) {
+      return value == null ? NULL : value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V unmask(Object s) {
+      return s == NULL ? null : (V) s; // NOPMD
     }
 
-    @SuppressWarnings("null")
     @Override
     public String toString() {
-      return super.toString() + "[supplied=" + supplied + "; value=" + future.getNow(null) + "]";
+      Object s = state;
+      return super.toString() + "[supplied=" + (s != null) + "; value="
+          + (s instanceof LazyComputation ? null : unmask(s)) + "]";
     }
   }
 
@@ -73,24 +283,42 @@ public interface Lazy<V> extends Supplier<V>, Consumer<V> {
    * @author Christian Kohlschütter
    */
   final class FromSupplier<V> extends BaseImpl<V> {
-    private final Supplier<V> supplier;
+    private Supplier<V> supplier; // cleared once completed
+    private final LazyFailurePolicy failurePolicy;
 
-    private FromSupplier(Supplier<V> supplier) {
+    private FromSupplier(Supplier<V> supplier, LazyFailurePolicy failurePolicy) {
       super();
       this.supplier = supplier;
+      this.failurePolicy = failurePolicy;
     }
 
     @Override
     public V get() {
-      if (!future.isDone() && supplied.compareAndSet(false, true)) {
-        future.complete(supplier.get());
-      }
+      return getOrCompute(supplier, failurePolicy);
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+      return getOrCompute(supplier, failurePolicy, Math.max(0, unit.toNanos(timeout)), true);
+    }
+
+    @Override
+    public V getInterruptibly() throws InterruptedException {
       try {
-        return future.get();
-      } catch (InterruptedException | ExecutionException e) {
-        throw new IllegalStateException(e);
+        return getOrCompute(supplier, failurePolicy, -1, true);
+      } catch (TimeoutException e) {
+        throw new IllegalStateException(e); // unreachable
       }
     }
+
+    /**
+     * Releases the supplier, along with anything it references (such as the source of a derived
+     * {@link Lazy}), since it is never called again.
+     */
+    @Override
+    void onCompleted() {
+      supplier = null; // NOPMD
+    }
   }
 
   /**
@@ -111,6 +339,16 @@ public interface Lazy<V> extends Supplier<V>, Consumer<V> {
       return supplied;
     }
 
+    @Override
+    public V get(long timeout, TimeUnit unit) {
+      return supplied;
+    }
+
+    @Override
+    public V getInterruptibly() {
+      return supplied;
+    }
+
     @Override
     public boolean complete(V value) {
       return false;
@@ -127,7 +365,43 @@ public interface Lazy<V> extends Supplier<V>, Consumer<V> {
    */
   @SuppressWarnings("PMD.ShortMethodName")
   static <V> Lazy<V> of(Supplier<V> supplier) {
-    return new FromSupplier<>(supplier);
+    return new FromSupplier<>(supplier, LazyFailurePolicy.reset());
+  }
+
+  /**
+   * Creates a lazy-load wrapper, using the given supplier to supply the object upon the first call
+   * to {@link #get()}, and the given {@link LazyFailurePolicy} to handle exceptions thrown by the
+   * supplier.
+   *
+   * @param <V> The object type.
+   * @param supplier The object supplier.
+   * @param failurePolicy The failure policy.
+   * @return The wrapper instance.
+   */
+  @SuppressWarnings("PMD.ShortMethodName")
+  static <V> Lazy<V> of(Supplier<V> supplier, LazyFailurePolicy failurePolicy) {
+    return new FromSupplier<>(supplier, Objects.requireNonNull(failurePolicy));
+  }
+
+  /**
+   * Creates a named lazy-load wrapper, using the given supplier to supply the object upon the first
+   * call to {@link #get()}.
+   * <p>
+   * If {@link LazyInstrumentation} is enabled, the time spent in the supplier, as well as the
+   * number of threads that had to wait for it (and for how long) are recorded under the given name.
+   * Otherwise, this is identical to {@link #of(Supplier)}, and the name is ignored.
+   *
+   * @param <V> The object type.
+   * @param name The name.
+   * @param supplier The object supplier.
+   * @return The wrapper instance.
+   */
+  static <V> Lazy<V> ofNamed(String name, Supplier<V> supplier) {
+    if (LazyInstrumentation.isEnabled()) {
+      return new InstrumentedLazy<>(name, supplier, LazyFailurePolicy.reset());
+    } else {
+      return of(supplier);
+    }
   }
 
   /**
@@ -152,6 +426,106 @@ public interface Lazy<V> extends Supplier<V>, Consumer<V> {
     return new WithSupplied<>(supplied);
   }
 
+  /**
+   * Creates a lazy-load wrapper whose value is computed asynchronously on the given
+   * {@link Executor}, starting with the first call to {@link AsyncLazy#get()},
+   * {@link AsyncLazy#getAsync()} or {@link AsyncLazy#prefetch()}.
+   *
+   * @param <V> The object type.
+   * @param supplier The object supplier.
+   * @param executor The executor to run the supplier on.
+   * @return The wrapper instance.
+   */
+  static <V> AsyncLazy<V> ofAsync(Supplier<V> supplier, Executor executor) {
+    return new AsyncLazy<>(supplier, executor, LazyFailurePolicy.reset());
+  }
+
+  /**
+   * Creates a lazy-load wrapper whose value is computed asynchronously on the given
+   * {@link Executor}, like {@link #ofAsync(Supplier, Executor)}, using the given
+   * {@link LazyFailurePolicy} to handle exceptions thrown by the supplier.
+   *
+   * @param <V> The object type.
+   * @param supplier The object supplier.
+   * @param executor The executor to run the supplier on.
+   * @param failurePolicy The failure policy.
+   * @return The wrapper instance.
+   */
+  static <V> AsyncLazy<V> ofAsync(Supplier<V> supplier, Executor executor,
+      LazyFailurePolicy failurePolicy) {
+    return new AsyncLazy<>(supplier, executor, failurePolicy);
+  }
+
+  /**
+   * Creates a lazy-load wrapper that holds its value via a {@link java.lang.ref.SoftReference}, so
+   * the value may be reclaimed under memory pressure, and is computed again upon the next call to
+   * {@link #get()}.
+   *
+   * @param <V> The object type.
+   * @param supplier The object supplier.
+   * @return The wrapper instance.
+   */
+  static <V> ReferenceLazy<V> ofSoft(Supplier<V> supplier) {
+    return new ReferenceLazy<>(supplier, true);
+  }
+
+  /**
+   * Creates a lazy-load wrapper that holds its value via a {@link java.lang.ref.WeakReference}, so
+   * the value may be reclaimed as soon as it is no longer strongly referenced elsewhere, and is
+   * computed again upon the next call to {@link #get()}.
+   *
+   * @param <V> The object type.
+   * @param supplier The object supplier.
+   * @return The wrapper instance.
+   */
+  static <V> ReferenceLazy<V> ofWeak(Supplier<V> supplier) {
+    return new ReferenceLazy<>(supplier, false);
+  }
+
+  /**
+   * Creates a lazy-load wrapper for an {@code int} value, using the given supplier to supply the
+   * value upon the first call to {@link LazyInt#getAsInt()}. The value is never boxed.
+   *
+   * @param supplier The value supplier.
+   * @return The wrapper instance.
+   */
+  static LazyInt ofInt(IntSupplier supplier) {
+    return new LazyInt(supplier);
+  }
+
+  /**
+   * Creates a lazy-load wrapper for a {@code long} value, using the given supplier to supply the
+   * value upon the first call to {@link LazyLong#getAsLong()}. The value is never boxed.
+   *
+   * @param supplier The value supplier.
+   * @return The wrapper instance.
+   */
+  static LazyLong ofLong(LongSupplier supplier) {
+    return new LazyLong(supplier);
+  }
+
+  /**
+   * Creates a lazy-load wrapper for a {@code double} value, using the given supplier to supply the
+   * value upon the first call to {@link LazyDouble#getAsDouble()}. The value is never boxed.
+   *
+   * @param supplier The value supplier.
+   * @return The wrapper instance.
+   */
+  static LazyDouble ofDouble(DoubleSupplier supplier) {
+    return new LazyDouble(supplier);
+  }
+
+  /**
+   * Creates a lazy-load wrapper for a {@code boolean} value, using the given supplier to supply
+   * the value upon the first call to {@link LazyBoolean#getAsBoolean()}. The value is never boxed.
+   *
+   * @param supplier The value supplier.
+   * @return The wrapper instance.
+   */
+  static LazyBoolean ofBoolean(BooleanSupplier supplier) {
+    return new LazyBoolean(supplier);
+  }
+
   /**
    * Returns the object. If this is the first call, the object is retrieved from the configured
    * supplier, and this instance transitions to a completed state.
@@ -161,6 +535,49 @@ public interface Lazy<V> extends Supplier<V>, Consumer<V> {
   @Override
   V get();
 
+  /**
+   * Returns the object, like {@link #get()}, but waits at most the given time for another thread
+   * that is currently supplying the object. If the calling thread supplies the object itself, the
+   * time spent in the supplier is not bounded.
+   * <p>
+   * Waiting threads are parked (not blocked on a monitor), so they do not pin the carrier threads
+   * of virtual threads.
+   * <p>
+   * The default implementation returns immediately if this instance is known to be completed.
+   * Otherwise, only one thread at a time calls {@link #get()} through this method, and concurrent
+   * callers of this method wait at most the given time for it. However, it cannot bound the time
+   * spent in {@link #get()} itself, for example when waiting for a thread that called {@link #get()}
+   * directly. All implementations provided by this library fully support timeouts.
+   *
+   * @param timeout The maximum time to wait.
+   * @param unit The time unit of the {@code timeout} argument.
+   * @return The object.
+   * @throws InterruptedException if the current thread was interrupted while waiting.
+   * @throws TimeoutException if the wait timed out.
+   */
+  default V get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+    if (BaseImpl.isCompleted(this)) {
+      return get();
+    }
+    return LazyComputation.getWithTimeout(this, Math.max(0, unit.toNanos(timeout)));
+  }
+
+  /**
+   * Returns the object, like {@link #get()}, but stops waiting for another thread that is
+   * currently supplying the object when the current thread is interrupted.
+   * <p>
+   * The default implementation simply calls {@link #get()}.
+   *
+   * @return The object.
+   * @throws InterruptedException if the current thread was interrupted while waiting.
+   */
+  default V getInterruptibly() throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    return get();
+  }
+
   /**
    * If not already completed, sets the value returned by {@link #get()} and related methods to the
    * given value, side-stepping the value that would be retrieved through other means. If already
@@ -179,4 +596,74 @@ public interface Lazy<V> extends Supplier<V>, Consumer<V> {
   default void accept(V value) {
     complete(value);
   }
+
+  /**
+   * Returns a derived {@link Lazy} that applies the given function to this instance's value.
+   * Nothing is evaluated until {@link #get()} is called on the derived instance. Once the derived
+   * value has been computed, the reference to this instance is released, so it costs a single field
+   * read from then on.
+   * <p>
+   * If this instance has already been completed, the function is applied immediately, and a
+   * constant {@link Lazy} is returned.
+   *
+   * @param <R> The derived object type.
+   * @param mapper The mapping function.
+   * @return The derived instance.
+   */
+  default <R> Lazy<R> map(Function<? super V, ? extends R> mapper) {
+    Objects.requireNonNull(mapper);
+    if (BaseImpl.isCompleted(this)) {
+      return ofSupplied(mapper.apply(get()));
+    }
+    return of(() -> mapper.apply(get()));
+  }
+
+  /**
+   * Returns a derived {@link Lazy} that applies the given function to this instance's value, and
+   * retrieves the value of the {@link Lazy} returned by that function. Nothing is evaluated until
+   * {@link #get()} is called on the derived instance. Once the derived value has been computed, the
+   * references to this and the intermediate instance are released.
+   * <p>
+   * If this instance has already been completed, the function is applied immediately. If the
+   * resulting {@link Lazy} is completed as well, a constant {@link Lazy} is returned.
+   *
+   * @param <R> The derived object type.
+   * @param mapper The mapping function.
+   * @return The derived instance.
+   */
+  default <R> Lazy<R> flatMap(Function<? super V, ? extends Lazy<? extends R>> mapper) {
+    Objects.requireNonNull(mapper);
+    if (BaseImpl.isCompleted(this)) {
+      Lazy<? extends R> inner = mapper.apply(get());
+      if (BaseImpl.isCompleted(inner)) {
+        return ofSupplied(inner.get());
+      }
+      return of(inner::get);
+    }
+    return of(() -> mapper.apply(get()).get());
+  }
+
+  /**
+   * Returns a derived {@link Lazy} that combines this instance's value with that of another
+   * {@link Lazy}. Nothing is evaluated until {@link #get()} is called on the derived instance. Once
+   * the derived value has been computed, the references to both source instances are released.
+   * <p>
+   * If both instances have already been completed, the function is applied immediately, and a
+   * constant {@link Lazy} is returned.
+   *
+   * @param <U> The other object type.
+   * @param <R> The derived object type.
+   * @param other The other {@link Lazy}.
+   * @param zipper The combining function.
+   * @return The derived instance.
+   */
+  default <U, R> Lazy<R> zip(Lazy<? extends U> other,
+      BiFunction<? super V, ? super U, ? extends R> zipper) {
+    Objects.requireNonNull(other);
+    Objects.requireNonNull(zipper);
+    if (BaseImpl.isCompleted(this) && BaseImpl.isCompleted(other)) {
+      return ofSupplied(zipper.apply(get(), other.get()));
+    }
+    return of(() -> zipper.apply(get(), other.get()));
+  }
 }
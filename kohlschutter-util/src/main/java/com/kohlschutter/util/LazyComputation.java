@@ -0,0 +1,277 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Marks an ongoing computation of a lazily-initialized value, and lets other threads wait for its
+ * outcome.
+ * <p>
+ * Waiting threads are kept in a lock-free stack, and are parked via {@link LockSupport} rather than
+ * blocked on a monitor, so waiting virtual threads do not pin their carrier threads.
+ *
+ * @author Christian Kohlschütter
+ */
+final class LazyComputation {
+  private static final AtomicReferenceFieldUpdater<LazyComputation, Object> WAITERS =
+      AtomicReferenceFieldUpdater.newUpdater(LazyComputation.class, Object.class, "waiters");
+
+  /**
+   * Marks the computation as finished; replaces the stack of waiters.
+   */
+  private static final Object FINISHED = new Object();
+
+  /**
+   * Computations in progress via {@link #getWithTimeout(Lazy, long)}, by {@link IdentityKey}.
+   */
+  private static final ConcurrentMap<IdentityKey, LazyComputation> TIMED_GETS =
+      new ConcurrentHashMap<>();
+
+  private final Thread owner = Thread.currentThread();
+  private volatile Throwable failure;
+
+  /**
+   * Either {@code null}, the top-most {@link Waiter}, or {@link #FINISHED}.
+   */
+  private volatile Object waiters;
+
+  private static final class IdentityKey {
+    private final Object ref;
+
+    IdentityKey(Object ref) {
+      this.ref = ref;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(ref);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof IdentityKey && ((IdentityKey) obj).ref == ref; // NOPMD
+    }
+  }
+
+  private static final class Waiter {
+    private volatile Thread thread = Thread.currentThread(); // null once no longer waiting
+    private volatile Waiter next;
+  }
+
+  /**
+   * Waits until {@link #finish()} has been called, ignoring (but preserving) interrupts.
+   *
+   * @throws IllegalStateException if called from the thread that performs the computation.
+   */
+  void await() {
+    try {
+      await(-1, false);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e); // unreachable
+    }
+  }
+
+  /**
+   * Waits until {@link #finish()} has been called, or until the given time has passed.
+   *
+   * @param nanos The maximum time to wait, in nanoseconds, or {@code -1} to wait forever.
+   * @param interruptible If {@code true}, an {@link InterruptedException} is thrown if the thread
+   *          is interrupted while waiting; otherwise, interrupts are ignored (but preserved).
+   * @return {@code true} if finished, {@code false} if the wait timed out.
+   * @throws InterruptedException if interrupted while waiting.
+   * @throws IllegalStateException if called from the thread that performs the computation.
+   */
+  @SuppressWarnings("PMD.CompareObjectsWithEquals")
+  boolean await(long nanos, boolean interruptible) throws InterruptedException {
+    if (owner == Thread.currentThread()) {
+      throw new IllegalStateException("Recursive initialization");
+    }
+    if (waiters == FINISHED) {
+      return true;
+    } else if (interruptible && Thread.interrupted()) {
+      throw new InterruptedException();
+    } else if (nanos == 0) {
+      return false;
+    }
+
+    long deadline = nanos > 0 ? System.nanoTime() + nanos : 0;
+    Waiter w = null;
+    boolean queued = false;
+    boolean interrupted = false;
+    try {
+      while (true) {
+        Object head = waiters;
+        if (head == FINISHED) {
+          return true;
+        } else if (!queued) {
+          if (w == null) {
+            w = new Waiter();
+          }
+          w.next = (Waiter) head;
+          queued = WAITERS.compareAndSet(this, head, w);
+          continue;
+        }
+
+        if (nanos < 0) {
+          LockSupport.park(this);
+        } else {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            removeWaiter(w);
+            return false;
+          }
+          LockSupport.parkNanos(this, remaining);
+        }
+        if (Thread.interrupted()) {
+          if (interruptible) {
+            removeWaiter(w);
+            throw new InterruptedException();
+          }
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Unlinks the given waiter (which timed out or was interrupted), along with any other such
+   * waiters, so that repeatedly timed-out callers do not accumulate while the computation hangs.
+   *
+   * @param node The waiter to remove.
+   */
+  @SuppressWarnings("PMD.AvoidReassigningLoopVariables")
+  private void removeWaiter(Waiter node) {
+    node.thread = null; // NOPMD
+    retry : while (true) {
+      Object head = waiters;
+      if (!(head instanceof Waiter)) {
+        return; // finished
+      }
+      Waiter pred = null;
+      Waiter s;
+      for (Waiter q = (Waiter) head; q != null; q = s) {
+        s = q.next;
+        if (q.thread != null) {
+          pred = q;
+        } else if (pred != null) {
+          pred.next = s;
+          if (pred.thread == null) {
+            continue retry; // pred was removed concurrently
+          }
+        } else if (!WAITERS.compareAndSet(this, q, s)) {
+          continue retry;
+        }
+      }
+      return;
+    }
+  }
+
+  /**
+   * Returns the number of queued waiters (for testing).
+   *
+   * @return The number of waiters.
+   */
+  int countWaiters() {
+    int count = 0;
+    Object head = waiters;
+    for (Waiter q = head instanceof Waiter ? (Waiter) head : null; q != null; q = q.next) {
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Marks the computation as permanently failed, and wakes up all waiting threads.
+   *
+   * @param t The failure.
+   */
+  void fail(Throwable t) {
+    failure = t;
+    finish();
+  }
+
+  /**
+   * Returns the failure set via {@link #fail(Throwable)}, or {@code null}.
+   *
+   * @return The failure, or {@code null}.
+   */
+  Throwable getFailure() {
+    return failure;
+  }
+
+  /**
+   * Marks the computation as finished (successfully or not), and wakes up all waiting threads.
+   */
+  void finish() {
+    Object head = WAITERS.getAndSet(this, FINISHED);
+    for (Waiter w = head instanceof Waiter ? (Waiter) head : null; w != null; w = w.next) {
+      Thread t = w.thread;
+      if (t != null) {
+        LockSupport.unpark(t);
+      }
+    }
+  }
+
+  /**
+   * Calls {@link Lazy#get()} for a {@link Lazy} implementation that has no own support for
+   * timeouts. Concurrent callers of this method for the same instance wait at most the given time
+   * for the one thread that currently calls {@link Lazy#get()}.
+   *
+   * @param <V> The object type.
+   * @param lazy The instance.
+   * @param nanos The maximum time to wait, in nanoseconds.
+   * @return The object.
+   * @throws InterruptedException if interrupted while waiting.
+   * @throws TimeoutException if the wait timed out.
+   * @throws IllegalStateException if called recursively from within {@link Lazy#get()}.
+   */
+  static <V> V getWithTimeout(Lazy<V> lazy, long nanos) throws InterruptedException,
+      TimeoutException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    long deadline = System.nanoTime() + nanos;
+    IdentityKey key = new IdentityKey(lazy);
+    LazyComputation computation = null;
+    while (true) {
+      if (computation == null) {
+        computation = new LazyComputation();
+      }
+      LazyComputation existing = TIMED_GETS.putIfAbsent(key, computation);
+      if (existing == null) {
+        try {
+          return lazy.get();
+        } finally {
+          TIMED_GETS.remove(key, computation);
+          computation.finish();
+        }
+      } else if (!existing.await(Math.max(0, deadline - System.nanoTime()), true)) {
+        throw new TimeoutException();
+      }
+    }
+  }
+}
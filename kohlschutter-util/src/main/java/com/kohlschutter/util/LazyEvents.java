@@ -0,0 +1,48 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+/**
+ * Emits JFR events for {@link LazyInstrumentation}.
+ * <p>
+ * JFR is not available in this Java release; see the corresponding class in src/main/java11.
+ * <p>
+ * The Java 8 build also compiles the src/main/java11 overlay, so an identical copy of this class in
+ * src/main/java8 shadows it there. Keep both copies identical.
+ *
+ * @author Christian Kohlschütter
+ */
+final class LazyEvents {
+  private LazyEvents() {
+    throw new IllegalStateException("No instances");
+  }
+
+  static Object beginInitialization() {
+    return null;
+  }
+
+  static void endInitialization(Object event, String name, boolean failed) {
+  }
+
+  static Object beginWait() {
+    return null;
+  }
+
+  static void endWait(Object event, String name) {
+  }
+}
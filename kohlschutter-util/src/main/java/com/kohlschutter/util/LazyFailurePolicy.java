@@ -0,0 +1,148 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Determines what a {@link Lazy} does when its supplier throws an exception.
+ * <p>
+ * In any case, the exception is rethrown to the caller as-is. Depending on the policy, the
+ * supplier may be retried a couple of times before giving up, and the exception may be cached and
+ * rethrown to all subsequent callers, or the {@link Lazy} may be reset, so the next caller tries
+ * again.
+ * <p>
+ * {@link Error}s are never retried nor cached.
+ *
+ * @author Christian Kohlschütter
+ * @see Lazy#of(Supplier, LazyFailurePolicy)
+ */
+public final class LazyFailurePolicy {
+  private static final LazyFailurePolicy RESET = new LazyFailurePolicy(false, 1, 0);
+  private static final LazyFailurePolicy CACHE = new LazyFailurePolicy(true, 1, 0);
+
+  private final boolean cachingFailures;
+  private final int maxAttempts;
+  private final long initialBackoffNanos;
+
+  private LazyFailurePolicy(boolean cachingFailures, int maxAttempts, long initialBackoffNanos) {
+    this.cachingFailures = cachingFailures;
+    this.maxAttempts = maxAttempts;
+    this.initialBackoffNanos = initialBackoffNanos;
+  }
+
+  /**
+   * Returns a policy that resets the {@link Lazy} upon failure, so the next caller tries again.
+   * This is the default.
+   *
+   * @return The policy.
+   */
+  public static LazyFailurePolicy reset() {
+    return RESET;
+  }
+
+  /**
+   * Returns a policy that caches the exception, and rethrows it to all subsequent callers.
+   *
+   * @return The policy.
+   */
+  public static LazyFailurePolicy cache() {
+    return CACHE;
+  }
+
+  /**
+   * Returns a policy that calls the supplier up to {@code maxAttempts} times, with exponential
+   * backoff between attempts, and resets the {@link Lazy} if all attempts failed.
+   * <p>
+   * Concurrent callers keep waiting while retries are in progress.
+   *
+   * @param maxAttempts The maximum number of attempts (at least 1).
+   * @param initialBackoff The time to wait after the first failed attempt; doubled after every
+   *          subsequent failure.
+   * @param unit The time unit for {@code initialBackoff}.
+   * @return The policy.
+   * @throws IllegalArgumentException if {@code maxAttempts} is smaller than 1 or if
+   *           {@code initialBackoff} is negative.
+   */
+  public static LazyFailurePolicy retry(int maxAttempts, long initialBackoff, TimeUnit unit) {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("maxAttempts must be at least 1");
+    }
+    if (initialBackoff < 0) {
+      throw new IllegalArgumentException("initialBackoff must not be negative");
+    }
+    return new LazyFailurePolicy(false, maxAttempts, unit.toNanos(initialBackoff));
+  }
+
+  /**
+   * Returns a policy identical to this one, except that the final exception (after all attempts
+   * have been exhausted) is cached, and rethrown to all subsequent callers.
+   *
+   * @return The policy.
+   */
+  public LazyFailurePolicy cachingFailures() {
+    if (cachingFailures) {
+      return this;
+    }
+    return new LazyFailurePolicy(true, maxAttempts, initialBackoffNanos);
+  }
+
+  /**
+   * Checks if the final exception should be cached.
+   *
+   * @return {@code true} if so.
+   */
+  boolean isCachingFailures() {
+    return cachingFailures;
+  }
+
+  /**
+   * Calls the given supplier, retrying as configured.
+   *
+   * @param <V> The object type.
+   * @param supplier The supplier.
+   * @return The supplied value.
+   */
+  <V> V supply(Supplier<V> supplier) {
+    long backoff = initialBackoffNanos;
+    for (int attempt = 1;; attempt++) {
+      try {
+        return supplier.get();
+      } catch (RuntimeException e) {
+        if (attempt >= maxAttempts) {
+          throw e;
+        }
+        try {
+          TimeUnit.NANOSECONDS.sleep(backoff);
+        } catch (InterruptedException e1) {
+          Thread.currentThread().interrupt();
+          e.addSuppressed(e1);
+          throw e;
+        }
+        backoff = (backoff > Long.MAX_VALUE / 2) ? Long.MAX_VALUE : backoff * 2;
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "[maxAttempts=" + maxAttempts + "; initialBackoffNanos="
+        + initialBackoffNanos + "; cachingFailures=" + cachingFailures + "]";
+  }
+}
@@ -0,0 +1,291 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * A group of {@link Supplier}s (usually {@link Lazy} instances) that can be initialized ("warmed
+ * up") in parallel, for example during application startup.
+ * <p>
+ * Instead of initializing many lazy singletons serially upon first use, enroll them in a group,
+ * and call {@link #warmUp(Executor, long, TimeUnit)}. The returned {@link Report} tells which
+ * initializers took how long.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class LazyGroup {
+  private final List<Member> members = new CopyOnWriteArrayList<>();
+
+  private static final class Member {
+    private final String name;
+    private final Supplier<?> supplier;
+
+    Member(String name, Supplier<?> supplier) {
+      this.name = name;
+      this.supplier = supplier;
+    }
+  }
+
+  /**
+   * Creates a new, empty group.
+   */
+  public LazyGroup() {
+  }
+
+  /**
+   * Enrolls the given {@link Lazy} (or other {@link Supplier}) in this group.
+   *
+   * @param <L> The supplier type.
+   * @param name The name used in the {@link Report}.
+   * @param lazy The {@link Lazy} to enroll.
+   * @return The given {@link Lazy}, for chaining, e.g.,
+   *         {@code static final Lazy<Foo> FOO = GROUP.enroll("foo", Lazy.of(Foo::new))}.
+   */
+  public <L extends Supplier<?>> L enroll(String name, L lazy) {
+    members.add(new Member(Objects.requireNonNull(name), Objects.requireNonNull(lazy)));
+    return lazy;
+  }
+
+  /**
+   * Warms up all enrolled members in parallel on the common {@link ForkJoinPool}.
+   *
+   * @param timeout The maximum time to wait.
+   * @param unit The time unit for {@code timeout}.
+   * @return The report.
+   * @see #warmUp(Executor, long, TimeUnit)
+   */
+  public Report warmUp(long timeout, TimeUnit unit) {
+    return warmUp(ForkJoinPool.commonPool(), timeout, unit);
+  }
+
+  /**
+   * Warms up all enrolled members in parallel on the given {@link Executor}, waiting until all of
+   * them have been initialized, or until the given deadline has passed.
+   * <p>
+   * Any {@link Executor} can be used, including one creating a virtual thread per task. Members
+   * that have not completed in time continue to be initialized in the background, and are marked
+   * as unfinished in the report. Exceptions thrown by a member are recorded in the report, and do
+   * not affect other members. Likewise, if the executor rejects a member, the
+   * {@link RejectedExecutionException} is recorded as that member's failure.
+   *
+   * @param executor The executor to run the initializers on.
+   * @param timeout The maximum time to wait.
+   * @param unit The time unit for {@code timeout}.
+   * @return The report.
+   */
+  public Report warmUp(Executor executor, long timeout, TimeUnit unit) {
+    long start = System.nanoTime();
+    long deadline = start + unit.toNanos(timeout);
+
+    List<Member> snapshot = new ArrayList<>(members);
+    List<CompletableFuture<Timing>> futures = new ArrayList<>(snapshot.size());
+    for (Member m : snapshot) {
+      CompletableFuture<Timing> f;
+      try {
+        f = CompletableFuture.supplyAsync(() -> initialize(m), executor);
+      } catch (RejectedExecutionException e) {
+        f = CompletableFuture.completedFuture(new Timing(m.name, 0, e));
+      }
+      futures.add(f);
+    }
+
+    List<Timing> timings = new ArrayList<>(snapshot.size());
+    boolean interrupted = false;
+    for (int i = 0, n = snapshot.size(); i < n; i++) {
+      CompletableFuture<Timing> f = futures.get(i);
+      Timing t = null;
+      if (!interrupted) {
+        try {
+          t = f.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (TimeoutException e) {
+          // not finished in time
+        } catch (ExecutionException e) {
+          throw new IllegalStateException(e); // unreachable: initialize does not throw
+        }
+      }
+      if (t == null) {
+        t = f.getNow(null);
+      }
+      if (t == null) {
+        t = new Timing(snapshot.get(i).name, -1, null);
+      }
+      timings.add(t);
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    return new Report(timings, System.nanoTime() - start);
+  }
+
+  @SuppressWarnings("PMD.AvoidCatchingThrowable")
+  private static Timing initialize(Member m) {
+    long time = System.nanoTime();
+    Throwable failure = null;
+    try {
+      m.supplier.get();
+    } catch (Throwable t) { // NOPMD
+      failure = t;
+    }
+    return new Timing(m.name, System.nanoTime() - time, failure);
+  }
+
+  /**
+   * The time it took to initialize a member of a {@link LazyGroup}.
+   *
+   * @author Christian Kohlschütter
+   */
+  public static final class Timing {
+    private final String name;
+    private final long nanos;
+    private final Throwable failure;
+
+    Timing(String name, long nanos, Throwable failure) {
+      this.name = name;
+      this.nanos = nanos;
+      this.failure = failure;
+    }
+
+    /**
+     * Returns the name of the member.
+     *
+     * @return The name.
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Returns the time it took to initialize the member, in nanoseconds, or {@code -1} if the
+     * member was not initialized before the deadline.
+     *
+     * @return The time in nanoseconds, or {@code -1}.
+     */
+    public long getNanos() {
+      return nanos;
+    }
+
+    /**
+     * Checks if the member was initialized before the deadline (successfully or not).
+     *
+     * @return {@code true} if finished.
+     */
+    public boolean isFinished() {
+      return nanos >= 0;
+    }
+
+    /**
+     * Returns the exception thrown upon initialization, or {@code null}.
+     *
+     * @return The failure, or {@code null}.
+     */
+    public Throwable getFailure() {
+      return failure;
+    }
+
+    @Override
+    public String toString() {
+      return name + ": " + (isFinished() ? TimeUnit.NANOSECONDS.toMillis(nanos) + "ms"
+          : "unfinished") + (failure == null ? "" : " (" + failure + ")");
+    }
+  }
+
+  /**
+   * The outcome of {@link LazyGroup#warmUp(Executor, long, TimeUnit)}.
+   *
+   * @author Christian Kohlschütter
+   */
+  public static final class Report {
+    private final List<Timing> timings;
+    private final long totalNanos;
+
+    Report(List<Timing> timings, long totalNanos) {
+      this.timings = Collections.unmodifiableList(timings);
+      this.totalNanos = totalNanos;
+    }
+
+    /**
+     * Returns the timings of all members, in enrollment order.
+     *
+     * @return The timings.
+     */
+    public List<Timing> getTimings() {
+      return timings;
+    }
+
+    /**
+     * Returns the timings of all members, slowest first (unfinished members first).
+     *
+     * @return The sorted timings.
+     */
+    public List<Timing> getTimingsSlowestFirst() {
+      List<Timing> list = new ArrayList<>(timings);
+      list.sort((a, b) -> {
+        if (a.isFinished() != b.isFinished()) {
+          return a.isFinished() ? 1 : -1;
+        }
+        return Long.compare(b.nanos, a.nanos);
+      });
+      return list;
+    }
+
+    /**
+     * Returns the wall-clock time of the warm-up, in nanoseconds.
+     *
+     * @return The time in nanoseconds.
+     */
+    public long getTotalNanos() {
+      return totalNanos;
+    }
+
+    /**
+     * Checks if all members have been initialized successfully before the deadline.
+     *
+     * @return {@code true} if so.
+     */
+    public boolean isComplete() {
+      for (Timing t : timings) {
+        if (!t.isFinished() || t.failure != null) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public String toString() {
+      return super.toString() + "[totalMillis=" + TimeUnit.NANOSECONDS.toMillis(totalNanos)
+          + "; timings=" + getTimingsSlowestFirst() + "]";
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Optional instrumentation for named {@link Lazy} instances (see
+ * {@link Lazy#ofNamed(String, java.util.function.Supplier)}).
+ * <p>
+ * Instrumentation is enabled by setting the system property
+ * {@code com.kohlschutter.util.lazy.instrumentation} to {@code true} before the first use of
+ * {@link Lazy}. When disabled (the default), named lazies are plain {@link Lazy} instances, and no
+ * overhead is incurred.
+ * <p>
+ * When enabled, metrics are collected per name, and exposed as MXBeans of the form
+ * {@code com.kohlschutter.util:type=Lazy,name="..."}. On Java 11 and newer, JFR events
+ * ({@code com.kohlschutter.util.LazyInitialization} and {@code com.kohlschutter.util.LazyWait}) are
+ * emitted as well.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class LazyInstrumentation {
+  private static final boolean ENABLED = SystemPropertyUtil.getBooleanSystemProperty(
+      "com.kohlschutter.util.lazy.instrumentation", false);
+
+  private static final Map<String, LazyMetrics> METRICS = new ConcurrentHashMap<>();
+
+  private LazyInstrumentation() {
+    throw new IllegalStateException("No instances");
+  }
+
+  /**
+   * Checks if instrumentation is enabled.
+   *
+   * @return {@code true} if enabled.
+   */
+  public static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  /**
+   * Returns the metrics for the given name, or {@code null} if no such metrics exist (or if
+   * instrumentation is disabled).
+   *
+   * @param name The name.
+   * @return The metrics, or {@code null}.
+   */
+  public static LazyMetricsMXBean getMetrics(String name) {
+    return METRICS.get(name);
+  }
+
+  /**
+   * Returns the metrics for all named lazies created so far.
+   *
+   * @return The metrics.
+   */
+  public static Collection<LazyMetricsMXBean> getAllMetrics() {
+    return Collections.unmodifiableCollection(new ArrayList<>(METRICS.values()));
+  }
+
+  static LazyMetrics metricsFor(String name) {
+    LazyMetrics metrics = METRICS.get(name);
+    if (metrics == null) {
+      LazyMetrics newMetrics = new LazyMetrics(name);
+      metrics = METRICS.putIfAbsent(name, newMetrics);
+      if (metrics == null) {
+        metrics = newMetrics;
+        registerMBean(metrics);
+      }
+    }
+    return metrics;
+  }
+
+  @SuppressWarnings("PMD.AvoidCatchingGenericException")
+  private static void registerMBean(LazyMetrics metrics) {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      server.registerMBean(metrics, new ObjectName("com.kohlschutter.util:type=Lazy,name="
+          + ObjectName.quote(metrics.getName())));
+    } catch (Exception | LinkageError e) { // NOPMD
+      // ignore: JMX not available
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntSupplier;
+
+/**
+ * A lazy-initialized {@code int} value, which is never boxed.
+ * <p>
+ * This is the {@code int}-specialized counterpart of {@link Lazy}; see
+ * {@link Lazy#ofInt(IntSupplier)}.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class LazyInt extends AbstractLazyPrimitive implements IntSupplier, IntConsumer {
+  private IntSupplier supplier; // cleared once completed
+
+  LazyInt(IntSupplier supplier) {
+    super();
+    this.supplier = supplier;
+  }
+
+  @Override
+  long supplyBits() {
+    return supplier.getAsInt();
+  }
+
+  @Override
+  void onCompleted() {
+    supplier = null; // NOPMD
+  }
+
+  /**
+   * Returns the value. If this is the first call, the value is retrieved from the configured
+   * supplier, and this instance transitions to a completed state.
+   *
+   * @return The value.
+   */
+  @Override
+  public int getAsInt() {
+    return (int) getBits();
+  }
+
+  /**
+   * If not already completed, sets the value returned by {@link #getAsInt()} to the given value,
+   * side-stepping the value that would be retrieved from the supplier. If already completed,
+   * nothing is changed and {@code false} is returned.
+   *
+   * @param value the result value
+   * @return {@code true} if this invocation caused this instance to transition to a completed
+   *         state, else {@code false}
+   */
+  public boolean complete(int value) {
+    return completeBits(value);
+  }
+
+  /**
+   * Calls {@link #complete(int)}, disregarding the return value.
+   */
+  @Override
+  public void accept(int value) {
+    complete(value);
+  }
+
+  @Override
+  String valueToString() {
+    return Integer.toString((int) getBits());
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * A lazy-initialized {@code long} value, which is never boxed.
+ * <p>
+ * This is the {@code long}-specialized counterpart of {@link Lazy}; see
+ * {@link Lazy#ofLong(LongSupplier)}.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class LazyLong extends AbstractLazyPrimitive implements LongSupplier, LongConsumer {
+  private LongSupplier supplier; // cleared once completed
+
+  LazyLong(LongSupplier supplier) {
+    super();
+    this.supplier = supplier;
+  }
+
+  @Override
+  long supplyBits() {
+    return supplier.getAsLong();
+  }
+
+  @Override
+  void onCompleted() {
+    supplier = null; // NOPMD
+  }
+
+  /**
+   * Returns the value. If this is the first call, the value is retrieved from the configured
+   * supplier, and this instance transitions to a completed state.
+   *
+   * @return The value.
+   */
+  @Override
+  public long getAsLong() {
+    return getBits();
+  }
+
+  /**
+   * If not already completed, sets the value returned by {@link #getAsLong()} to the given value,
+   * side-stepping the value that would be retrieved from the supplier. If already completed,
+   * nothing is changed and {@code false} is returned.
+   *
+   * @param value the result value
+   * @return {@code true} if this invocation caused this instance to transition to a completed
+   *         state, else {@code false}
+   */
+  public boolean complete(long value) {
+    return completeBits(value);
+  }
+
+  /**
+   * Calls {@link #complete(long)}, disregarding the return value.
+   */
+  @Override
+  public void accept(long value) {
+    complete(value);
+  }
+
+  @Override
+  String valueToString() {
+    return Long.toString(getBits());
+  }
+}
@@ -0,0 +1,328 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A keyed memoizer that provides the {@link Lazy} guarantee per key: Each value is computed at most
+ * once (unless evicted or invalidated), even under contention.
+ * <p>
+ * Unlike {@link ConcurrentHashMap#computeIfAbsent(Object, Function)}, no lock is held on the map
+ * while a value is computed. Other keys (including those in the same hash bin) remain accessible,
+ * and the loader may itself request values for other keys. Requesting the same key recursively
+ * from within the loader results in an {@link IllegalStateException}.
+ * <p>
+ * If a maximum size is configured, the oldest entries (in insertion order) are evicted once the
+ * map grows beyond that size.
+ *
+ * @param <K> The key type.
+ * @param <V> The value type.
+ * @author Christian Kohlschütter
+ */
+public final class LazyMap<K, V> implements Function<K, V> {
+  private final Map<K, Lazy<V>> map = new ConcurrentHashMap<>();
+  private final Function<? super K, ? extends V> loader;
+  private final int maximumSize;
+  /**
+   * The entries of {@link #map}, in insertion order, if bounded; guarded by itself.
+   */
+  private final Map<K, Lazy<V>> insertionOrder;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder loadSuccessCount = new LongAdder();
+  private final LongAdder loadFailureCount = new LongAdder();
+  private final LongAdder totalLoadTime = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  private LazyMap(Function<? super K, ? extends V> loader, int maximumSize) {
+    this.loader = Objects.requireNonNull(loader);
+    this.maximumSize = maximumSize;
+    this.insertionOrder = maximumSize > 0 ? new LinkedHashMap<>() : null;
+  }
+
+  /**
+   * Creates a new, unbounded {@link LazyMap}.
+   *
+   * @param <K> The key type.
+   * @param <V> The value type.
+   * @param loader The function that computes the value for a given key.
+   * @return The new instance.
+   */
+  @SuppressWarnings("PMD.ShortMethodName")
+  public static <K, V> LazyMap<K, V> of(Function<? super K, ? extends V> loader) {
+    return new LazyMap<>(loader, 0);
+  }
+
+  /**
+   * Creates a new {@link LazyMap} that holds at most {@code maximumSize} entries.
+   *
+   * @param <K> The key type.
+   * @param <V> The value type.
+   * @param loader The function that computes the value for a given key.
+   * @param maximumSize The maximum number of entries, or {@code 0} for no limit.
+   * @return The new instance.
+   * @throws IllegalArgumentException if {@code maximumSize} is negative.
+   */
+  @SuppressWarnings("PMD.ShortMethodName")
+  public static <K, V> LazyMap<K, V> of(Function<? super K, ? extends V> loader,
+      int maximumSize) {
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("maximumSize must not be negative");
+    }
+    return new LazyMap<>(loader, maximumSize);
+  }
+
+  /**
+   * Returns the value for the given key, computing it if necessary. Concurrent callers for the same
+   * key share a single computation.
+   * <p>
+   * If the loader throws an exception, the exception is passed on to the caller, and the next call
+   * for that key tries again.
+   *
+   * @param key The key.
+   * @return The value.
+   * @throws IllegalStateException if the key is requested recursively from within its loader.
+   */
+  public V get(K key) {
+    Lazy<V> lazy = map.get(key);
+    if (lazy == null) {
+      Lazy<V> newLazy = Lazy.of(() -> load(key));
+      lazy = map.putIfAbsent(key, newLazy);
+      if (lazy == null) {
+        lazy = newLazy;
+        missCount.increment();
+        if (insertionOrder != null) {
+          track(key, newLazy);
+        }
+      } else {
+        hitCount.increment();
+      }
+    } else {
+      hitCount.increment();
+    }
+
+    return lazy.get();
+  }
+
+  /**
+   * Calls {@link #get(Object)}.
+   *
+   * @param key The key.
+   * @return The value.
+   */
+  @Override
+  public V apply(K key) {
+    return get(key);
+  }
+
+  private V load(K key) {
+    long time = System.nanoTime();
+    boolean success = false;
+    try {
+      V value = loader.apply(key);
+      success = true;
+      return value;
+    } finally {
+      totalLoadTime.add(System.nanoTime() - time);
+      if (success) {
+        loadSuccessCount.increment();
+      } else {
+        loadFailureCount.increment();
+      }
+    }
+  }
+
+  @SuppressWarnings("PMD.CompareObjectsWithEquals")
+  private void track(K key, Lazy<V> lazy) {
+    synchronized (insertionOrder) {
+      if (map.get(key) != lazy) {
+        return; // invalidated in the meantime
+      }
+      insertionOrder.put(key, lazy);
+
+      Iterator<Map.Entry<K, Lazy<V>>> it = insertionOrder.entrySet().iterator();
+      while (insertionOrder.size() > maximumSize) {
+        Map.Entry<K, Lazy<V>> e = it.next();
+        it.remove();
+        if (map.remove(e.getKey(), e.getValue())) {
+          evictionCount.increment();
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes the entry for the given key, so the next call to {@link #get(Object)} computes the
+   * value again. Callers already waiting for a computation in progress still receive its value.
+   *
+   * @param key The key.
+   */
+  public void invalidate(K key) {
+    if (insertionOrder == null) {
+      map.remove(key);
+    } else {
+      synchronized (insertionOrder) {
+        Lazy<V> lazy = map.remove(key);
+        if (lazy != null) {
+          insertionOrder.remove(key, lazy);
+        }
+      }
+    }
+  }
+
+  /**
+   * Removes all entries.
+   */
+  public void invalidateAll() {
+    if (insertionOrder == null) {
+      map.clear();
+    } else {
+      synchronized (insertionOrder) {
+        map.clear();
+        insertionOrder.clear();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of entries tracked for eviction (for testing).
+   *
+   * @return The number of tracked entries.
+   */
+  int trackedSize() {
+    if (insertionOrder == null) {
+      return 0;
+    }
+    synchronized (insertionOrder) {
+      return insertionOrder.size();
+    }
+  }
+
+  /**
+   * Returns the number of entries, including those whose values are still being computed.
+   *
+   * @return The number of entries.
+   */
+  public int size() {
+    return map.size();
+  }
+
+  /**
+   * Returns a snapshot of the statistics of this map.
+   *
+   * @return The statistics.
+   */
+  public Stats getStats() {
+    return new Stats(hitCount.sum(), missCount.sum(), loadSuccessCount.sum(), loadFailureCount
+        .sum(), totalLoadTime.sum(), evictionCount.sum());
+  }
+
+  /**
+   * A snapshot of the statistics of a {@link LazyMap}.
+   *
+   * @author Christian Kohlschütter
+   */
+  public static final class Stats {
+    private final long hitCount;
+    private final long missCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadTimeNanos;
+    private final long evictionCount;
+
+    Stats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount,
+        long totalLoadTimeNanos, long evictionCount) {
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.loadSuccessCount = loadSuccessCount;
+      this.loadFailureCount = loadFailureCount;
+      this.totalLoadTimeNanos = totalLoadTimeNanos;
+      this.evictionCount = evictionCount;
+    }
+
+    /**
+     * Returns the number of lookups that found an existing entry (including entries whose values
+     * were still being computed).
+     *
+     * @return The hit count.
+     */
+    public long getHitCount() {
+      return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups that created a new entry.
+     *
+     * @return The miss count.
+     */
+    public long getMissCount() {
+      return missCount;
+    }
+
+    /**
+     * Returns the number of values that were successfully computed.
+     *
+     * @return The count.
+     */
+    public long getLoadSuccessCount() {
+      return loadSuccessCount;
+    }
+
+    /**
+     * Returns the number of computations that threw an exception.
+     *
+     * @return The count.
+     */
+    public long getLoadFailureCount() {
+      return loadFailureCount;
+    }
+
+    /**
+     * Returns the total time spent computing values, in nanoseconds.
+     *
+     * @return The time in nanoseconds.
+     */
+    public long getTotalLoadTimeNanos() {
+      return totalLoadTimeNanos;
+    }
+
+    /**
+     * Returns the number of entries that were evicted due to the size limit.
+     *
+     * @return The count.
+     */
+    public long getEvictionCount() {
+      return evictionCount;
+    }
+
+    @Override
+    public String toString() {
+      return super.toString() + "[hits=" + hitCount + "; misses=" + missCount + "; loadSuccess="
+          + loadSuccessCount + "; loadFailure=" + loadFailureCount + "; totalLoadTimeNanos="
+          + totalLoadTimeNanos + "; evictions=" + evictionCount + "]";
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the metrics for a named {@link Lazy}.
+ *
+ * @author Christian Kohlschütter
+ */
+final class LazyMetrics implements LazyMetricsMXBean {
+  private final String name;
+  private final LongAdder initializationCount = new LongAdder();
+  private final LongAdder failureCount = new LongAdder();
+  private final LongAdder initializationNanos = new LongAdder();
+  private final LongAdder waiterCount = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+
+  LazyMetrics(String name) {
+    this.name = name;
+  }
+
+  void recordInitialization(long nanos, boolean failed) {
+    initializationCount.increment();
+    initializationNanos.add(nanos);
+    if (failed) {
+      failureCount.increment();
+    }
+  }
+
+  void recordWait(long nanos) {
+    waiterCount.increment();
+    waitNanos.add(nanos);
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public long getInitializationCount() {
+    return initializationCount.sum();
+  }
+
+  @Override
+  public long getFailureCount() {
+    return failureCount.sum();
+  }
+
+  @Override
+  public long getTotalInitializationNanos() {
+    return initializationNanos.sum();
+  }
+
+  @Override
+  public long getWaiterCount() {
+    return waiterCount.sum();
+  }
+
+  @Override
+  public long getTotalWaitNanos() {
+    return waitNanos.sum();
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "[name=" + name + "; initializations=" + getInitializationCount()
+        + "; failures=" + getFailureCount() + "; initializationNanos="
+        + getTotalInitializationNanos() + "; waiters=" + getWaiterCount() + "; waitNanos="
+        + getTotalWaitNanos() + "]";
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+/**
+ * Metrics for a named {@link Lazy}, as collected by {@link LazyInstrumentation}.
+ * <p>
+ * If several instances share the same name, their metrics are aggregated.
+ *
+ * @author Christian Kohlschütter
+ */
+public interface LazyMetricsMXBean {
+  /**
+   * Returns the name.
+   *
+   * @return The name.
+   */
+  String getName();
+
+  /**
+   * Returns the number of times the supplier has been called.
+   *
+   * @return The count.
+   */
+  long getInitializationCount();
+
+  /**
+   * Returns the number of times the supplier has thrown an exception.
+   *
+   * @return The count.
+   */
+  long getFailureCount();
+
+  /**
+   * Returns the total wall-clock time spent in the supplier, in nanoseconds.
+   *
+   * @return The time in nanoseconds.
+   */
+  long getTotalInitializationNanos();
+
+  /**
+   * Returns the number of times a thread had to wait for another thread calling the supplier.
+   *
+   * @return The count.
+   */
+  long getWaiterCount();
+
+  /**
+   * Returns the total time threads spent waiting for another thread calling the supplier, in
+   * nanoseconds.
+   *
+   * @return The time in nanoseconds.
+   */
+  long getTotalWaitNanos();
+}
@@ -0,0 +1,147 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A read-only memory mapping of an entire file, addressable with {@code long} offsets, even for
+ * files larger than 2 GB.
+ * <p>
+ * Unlike a plain {@link java.nio.MappedByteBuffer}, the mapping is released deterministically upon
+ * {@link #close()}, instead of whenever the buffer happens to be garbage-collected. The instance
+ * may be closed while other threads are still reading from it: the mapping is then released once
+ * these reads have finished, and any access that starts after closing throws an
+ * {@link IllegalStateException}.
+ * <p>
+ * Every call to {@link #get(long)} and {@link #get(long, byte[], int, int)} briefly pins the
+ * mapping so it cannot be released underneath; this costs two atomic operations on state shared by
+ * all readers. For scanning many bytes, obtain a {@link Reader} via {@link #reader()} instead,
+ * which pins the mapping once, until the reader is closed.
+ * <p>
+ * Unmapping requires the {@code jdk.unsupported} module (for {@code sun.misc.Unsafe}); if it is
+ * not available, the mapping is released upon garbage collection.
+ *
+ * @author Christian Kohlschütter
+ * @see IOUtil#mapReadOnly(java.nio.file.Path)
+ */
+public abstract class MappedFile implements Closeable {
+  MappedFile() {
+  }
+
+  /**
+   * Returns the size of the mapped file, in bytes.
+   *
+   * @return The size.
+   */
+  public abstract long size();
+
+  /**
+   * Returns the byte at the given offset.
+   *
+   * @param offset The offset.
+   * @return The byte.
+   * @throws IndexOutOfBoundsException if the offset is out of bounds.
+   * @throws IllegalStateException if closed.
+   */
+  public abstract byte get(long offset);
+
+  /**
+   * Copies bytes starting at the given offset into the given array.
+   *
+   * @param offset The offset in the file.
+   * @param dst The target array.
+   * @param dstOffset The offset in the target array.
+   * @param length The number of bytes to copy.
+   * @throws IndexOutOfBoundsException if any of the offsets or the length are out of bounds.
+   * @throws IllegalStateException if closed.
+   */
+  public abstract void get(long offset, byte[] dst, int dstOffset, int length);
+
+  /**
+   * Returns a new {@link Reader} for the current thread, which pins the mapping until the reader is
+   * closed. Reads through the reader do not touch any state shared with other readers.
+   *
+   * @return The reader.
+   * @throws IllegalStateException if closed.
+   */
+  public abstract Reader reader();
+
+  /**
+   * Releases the mapping, once all reads in progress have finished. Calling this method more than
+   * once has no effect.
+   *
+   * @throws IOException on error.
+   */
+  @Override
+  public abstract void close() throws IOException;
+
+  /**
+   * A scoped accessor to a {@link MappedFile}. The mapping stays valid while the reader is open,
+   * even if the {@link MappedFile} itself is closed in the meantime.
+   * <p>
+   * A reader is confined to the thread that created it: reading from or closing it in any other
+   * thread throws an {@link IllegalStateException}. This guarantees that a read never overlaps
+   * with unmapping, without synchronizing every read. For parallel scans, obtain one reader per
+   * thread.
+   *
+   * @see MappedFile#reader()
+   */
+  public abstract static class Reader implements Closeable {
+    Reader() {
+    }
+
+    /**
+     * Returns the byte at the given offset.
+     *
+     * @param offset The offset.
+     * @return The byte.
+     * @throws IndexOutOfBoundsException if the offset is out of bounds.
+     * @throws IllegalStateException if this reader is closed, or not owned by the current thread.
+     */
+    public abstract byte get(long offset);
+
+    /**
+     * Copies bytes starting at the given offset into the given array.
+     *
+     * @param offset The offset in the file.
+     * @param dst The target array.
+     * @param dstOffset The offset in the target array.
+     * @param length The number of bytes to copy.
+     * @throws IndexOutOfBoundsException if any of the offsets or the length are out of bounds.
+     * @throws IllegalStateException if this reader is closed, or not owned by the current thread.
+     */
+    public abstract void get(long offset, byte[] dst, int dstOffset, int length);
+
+    /**
+     * Unpins the mapping. Calling this method more than once has no effect.
+     *
+     * @throws IllegalStateException if this reader is not owned by the current thread.
+     */
+    @Override
+    public abstract void close();
+  }
+
+  static void checkBounds(long offset, long length, long size) {
+    if (offset < 0 || length < 0 || offset > size - length) {
+      throw new IndexOutOfBoundsException("offset=" + offset + "; length=" + length + "; size="
+          + size);
+    }
+  }
+}
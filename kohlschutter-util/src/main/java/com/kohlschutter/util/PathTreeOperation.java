@@ -0,0 +1,394 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Deletes or copies a directory tree, optionally processing subtrees in parallel on a
+ * {@link ForkJoinPool}.
+ * <p>
+ * When processing in parallel, every file system call is made via
+ * {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)}: the pool may then add
+ * compensating threads, so the I/O-bound work is not limited to the pool's parallelism, and does
+ * not occupy all workers of a shared pool.
+ * <p>
+ * Errors do not stop the operation; they are collected, and reported at the end as a single
+ * {@link IOException} (with the first error as its cause, and up to {@link #MAX_SUPPRESSED}
+ * errors as suppressed exceptions).
+ *
+ * @author Christian Kohlschütter
+ * @see PathUtil#deleteRecursively(Path, ForkJoinPool, Consumer)
+ * @see PathUtil#copyRecursively(Path, Path, ForkJoinPool, Consumer, CopyOption...)
+ */
+final class PathTreeOperation {
+  /**
+   * The maximum number of files (not directories) processed by a single task.
+   */
+  private static final int FILE_BATCH_SIZE = 64;
+
+  private static final int MAX_SUPPRESSED = 100;
+
+  private final Path sourceRoot;
+  private final Path targetRoot; // null for deletion
+  private final CopyOption[] copyOptions;
+  private final CopyOption[] directoryCopyOptions;
+  private final boolean copyAttributes;
+  private final boolean parallel;
+  private final Consumer<Path> progress;
+
+  private final LongAdder count = new LongAdder();
+  private final Queue<IOException> errors = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger errorCount = new AtomicInteger();
+
+  private PathTreeOperation(Path sourceRoot, Path targetRoot, CopyOption[] copyOptions,
+      boolean parallel, Consumer<Path> progress) {
+    this.sourceRoot = sourceRoot;
+    this.targetRoot = targetRoot;
+    this.copyOptions = copyOptions;
+    this.copyAttributes = Arrays.asList(copyOptions).contains(StandardCopyOption.COPY_ATTRIBUTES);
+    // directory attributes are copied after the contents; see #copyDirectoryAttributes
+    this.directoryCopyOptions = Arrays.stream(copyOptions).filter((o) -> o
+        != StandardCopyOption.COPY_ATTRIBUTES).toArray(CopyOption[]::new);
+    this.parallel = parallel;
+    this.progress = progress;
+  }
+
+  static long delete(Path root, ForkJoinPool pool, Consumer<Path> progress) throws IOException {
+    if (!Files.exists(root, LinkOption.NOFOLLOW_LINKS)) {
+      return 0;
+    }
+    return new PathTreeOperation(root, null, new CopyOption[0], pool != null, progress).run(pool,
+        "delete");
+  }
+
+  static long copy(Path source, Path target, ForkJoinPool pool, Consumer<Path> progress,
+      CopyOption... options) throws IOException {
+    if (Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS) && realPathOfNearestAncestor(target)
+        .startsWith(source.toRealPath())) {
+      // the copy would become part of the source, and recurse endlessly
+      throw new IOException("Cannot copy " + source + " into itself: " + target);
+    }
+    CopyOption[] opts = Arrays.copyOf(options, options.length + 1);
+    opts[options.length] = LinkOption.NOFOLLOW_LINKS;
+    return new PathTreeOperation(source, target, opts, pool != null, progress).run(pool, "copy");
+  }
+
+  /**
+   * Resolves the real path of the given path, which may not exist yet, by resolving its nearest
+   * existing ancestor.
+   *
+   * @param path The path.
+   * @return The real path.
+   * @throws IOException on error.
+   */
+  private static Path realPathOfNearestAncestor(Path path) throws IOException {
+    Path p = path.toAbsolutePath().normalize();
+    Path existing = p;
+    while (existing != null && !Files.exists(existing)) {
+      existing = existing.getParent();
+    }
+    if (existing == null) {
+      return p;
+    }
+    return existing.toRealPath().resolve(existing.relativize(p).toString());
+  }
+
+  private long run(ForkJoinPool pool, String verb) throws IOException {
+    NodeTask task = new NodeTask(Arrays.asList(sourceRoot));
+    if (pool == null) {
+      task.compute();
+    } else {
+      pool.invoke(task);
+    }
+
+    IOException first = errors.peek();
+    if (first != null) {
+      IOException e = new IOException("Could not " + verb + " " + errorCount.get() + " path(s) in "
+          + sourceRoot, first);
+      for (IOException suppressed : errors) {
+        if (suppressed != first) { // NOPMD
+          e.addSuppressed(suppressed);
+        }
+      }
+      throw e;
+    }
+    return count.sum();
+  }
+
+  private void addError(IOException e) {
+    if (errorCount.incrementAndGet() <= MAX_SUPPRESSED + 1) {
+      errors.add(e);
+    }
+  }
+
+  private void completed(Path path) {
+    count.increment();
+    if (progress != null) {
+      progress.accept(path);
+    }
+  }
+
+  private Path targetFor(Path source) {
+    return targetRoot.resolve(sourceRoot.relativize(source).toString());
+  }
+
+  /**
+   * Copies the times and (where supported) POSIX permissions of a source directory to its copy.
+   * <p>
+   * This must happen after the directory's contents have been copied: otherwise, copying the
+   * contents would modify the target's last-modified time, and a read-only source directory would
+   * yield a read-only target that cannot be populated.
+   *
+   * @param source The source directory.
+   * @param target The target directory.
+   * @throws IOException on error.
+   */
+  private static void copyDirectoryAttributes(Path source, Path target) throws IOException {
+    BasicFileAttributes attrs = Files.readAttributes(source, BasicFileAttributes.class,
+        LinkOption.NOFOLLOW_LINKS);
+
+    PosixFileAttributeView sourcePosix = Files.getFileAttributeView(source,
+        PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+    PosixFileAttributeView targetPosix = Files.getFileAttributeView(target,
+        PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+    if (sourcePosix != null && targetPosix != null) {
+      targetPosix.setPermissions(sourcePosix.readAttributes().permissions());
+    }
+
+    Files.getFileAttributeView(target, BasicFileAttributeView.class, LinkOption.NOFOLLOW_LINKS)
+        .setTimes(attrs.lastModifiedTime(), attrs.lastAccessTime(), attrs.creationTime());
+  }
+
+  /**
+   * Runs a blocking file system operation. When processing in parallel, it is run via
+   * {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)}, so the pool may activate or
+   * create compensating threads instead of having all of its workers wait for I/O (which would
+   * otherwise starve unrelated tasks, notably on the common pool).
+   *
+   * @param <T> The result type.
+   * @param op The operation.
+   * @return The result.
+   * @throws IOException on error.
+   */
+  private <T> T blocking(IOSupplier<T> op) throws IOException {
+    if (!parallel) {
+      return op.get();
+    }
+    IOBlocker<T> blocker = new IOBlocker<>(op);
+    try {
+      ForkJoinPool.managedBlock(blocker);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw (InterruptedIOException) new InterruptedIOException().initCause(e);
+    }
+    if (blocker.exception != null) {
+      throw blocker.exception;
+    }
+    return blocker.result;
+  }
+
+  @FunctionalInterface
+  private interface IOSupplier<T> {
+    T get() throws IOException;
+  }
+
+  private static final class IOBlocker<T> implements ForkJoinPool.ManagedBlocker {
+    private final IOSupplier<T> op;
+    private T result;
+    private IOException exception;
+    private boolean done;
+
+    IOBlocker(IOSupplier<T> op) {
+      this.op = op;
+    }
+
+    @Override
+    public boolean block() {
+      try {
+        result = op.get();
+      } catch (IOException e) {
+        exception = e;
+      }
+      done = true;
+      return true;
+    }
+
+    @Override
+    public boolean isReleasable() {
+      return done;
+    }
+  }
+
+  /**
+   * Processes a list of paths, which are either a batch of files, or a single directory (including
+   * its contents).
+   */
+  private final class NodeTask extends RecursiveTask<Boolean> {
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<Path> paths;
+
+    NodeTask(List<Path> paths) {
+      super();
+      this.paths = paths;
+    }
+
+    @Override
+    protected Boolean compute() {
+      boolean success = true;
+      for (Path path : paths) {
+        try {
+          if (blocking(() -> processUnlessDirectory(path))) {
+            success &= processDirectory(path);
+          }
+        } catch (IOException e) {
+          addError(e);
+          success = false;
+        }
+      }
+      return success;
+    }
+
+    /**
+     * Deletes or copies the given path, unless it is a directory.
+     *
+     * @param path The path.
+     * @return {@code true} if the path is a directory, and was not processed.
+     * @throws IOException on error.
+     */
+    private boolean processUnlessDirectory(Path path) throws IOException {
+      if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+        return true;
+      }
+      if (targetRoot == null) {
+        Files.delete(path);
+      } else {
+        Files.copy(path, targetFor(path), copyOptions);
+      }
+      completed(path);
+      return false;
+    }
+
+    private boolean processDirectory(Path dir) throws IOException {
+      boolean created = targetRoot != null && blocking(() -> createTargetDirectory(dir));
+
+      List<NodeTask> subtasks = new ArrayList<>();
+      boolean success = blocking(() -> listDirectory(dir, subtasks));
+
+      if (parallel) {
+        for (NodeTask t : ForkJoinTask.invokeAll(subtasks)) {
+          success &= t.join();
+        }
+      } else {
+        for (NodeTask t : subtasks) {
+          success &= t.compute();
+        }
+      }
+
+      if (targetRoot == null) {
+        if (!success) {
+          return false; // the directory cannot be empty; don't report it as another error
+        }
+        blocking(() -> {
+          Files.delete(dir);
+          return null;
+        });
+      } else if (created && copyAttributes) {
+        blocking(() -> {
+          copyDirectoryAttributes(dir, targetFor(dir));
+          return null;
+        });
+      }
+      completed(dir);
+      return success;
+    }
+
+    /**
+     * Creates the copy of the given directory, unless it already exists.
+     *
+     * @param dir The source directory.
+     * @return {@code true} if the directory was created.
+     * @throws IOException on error.
+     */
+    private boolean createTargetDirectory(Path dir) throws IOException {
+      Path target = targetFor(dir);
+      if (Files.isDirectory(target, LinkOption.NOFOLLOW_LINKS)) {
+        return false;
+      }
+      Files.copy(dir, target, directoryCopyOptions);
+      return true;
+    }
+
+    /**
+     * Lists the given directory, and adds subtasks for its contents.
+     *
+     * @param dir The directory.
+     * @param subtasks The list of subtasks to add to.
+     * @return {@code true} if the directory was listed without errors.
+     * @throws IOException if the directory could not be opened.
+     */
+    private boolean listDirectory(Path dir, List<NodeTask> subtasks) throws IOException {
+      boolean success = true;
+      List<Path> files = new ArrayList<>();
+      try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+        for (Path child : ds) {
+          if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+            subtasks.add(new NodeTask(Arrays.asList(child)));
+          } else {
+            files.add(child);
+            if (files.size() == FILE_BATCH_SIZE) {
+              subtasks.add(new NodeTask(files));
+              files = new ArrayList<>();
+            }
+          }
+        }
+      } catch (DirectoryIteratorException e) {
+        // still process the entries listed so far
+        addError(e.getCause());
+        success = false;
+      }
+      if (!files.isEmpty()) {
+        subtasks.add(new NodeTask(files));
+      }
+      return success;
+    }
+  }
+}
@@ -20,9 +20,14 @@ package com.kohlschutter.util;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.CopyOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import org.eclipse.jdt.annotation.Nullable;
 
 import com.kohlschutter.annotations.compiletime.SuppressFBWarnings;
 
@@ -126,6 +131,106 @@ public final class PathUtil {
     }
   }
 
+  /**
+   * Tries to resolve a path into a real path as much as possible, like
+   * {@link #partialRealpath(Path)}, using the given cache for the path and its parent directories.
+   *
+   * @param p The path to canonicalize.
+   * @param cache The cache, or {@code null} to resolve without caching.
+   * @return A somewhat real path.
+   */
+  public static Path partialRealpath(Path p, @Nullable RealpathCache cache) {
+    return cache == null ? partialRealpath(p) : cache.partialRealpath(p);
+  }
+
+  /**
+   * Deletes the given file or directory tree, processing subtrees in parallel on the common
+   * {@link ForkJoinPool}. Symbolic links are deleted, not followed.
+   * <p>
+   * File system calls are made via {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)},
+   * so the common pool may add compensating threads rather than having all its workers wait for
+   * I/O.
+   *
+   * @param root The file or directory to delete.
+   * @return The number of deleted entries (files, links and directories); {@code 0} if the root
+   *         did not exist.
+   * @throws IOException if any entry could not be deleted (after attempting to delete all others).
+   * @see #deleteRecursively(Path, ForkJoinPool, Consumer)
+   */
+  public static long deleteRecursively(Path root) throws IOException {
+    return deleteRecursively(root, ForkJoinPool.commonPool(), null);
+  }
+
+  /**
+   * Deletes the given file or directory tree. Symbolic links are deleted, not followed.
+   * <p>
+   * Errors do not stop the operation. Instead, they are aggregated into a single
+   * {@link IOException}, which is thrown at the end (with the first error as its cause, and
+   * further errors as suppressed exceptions).
+   *
+   * @param root The file or directory to delete.
+   * @param pool The pool to process subtrees in parallel, or {@code null} to delete serially in the
+   *          current thread (which may be preferable for spinning disks).
+   * @param progress If not {@code null}, called for each deleted entry, potentially concurrently
+   *          from multiple threads.
+   * @return The number of deleted entries (files, links and directories); {@code 0} if the root
+   *         did not exist.
+   * @throws IOException if any entry could not be deleted (after attempting to delete all others).
+   */
+  public static long deleteRecursively(Path root, @Nullable ForkJoinPool pool,
+      @Nullable Consumer<Path> progress) throws IOException {
+    return PathTreeOperation.delete(root, pool, progress);
+  }
+
+  /**
+   * Copies the given file or directory tree to the given target, processing subtrees in parallel
+   * on the common {@link ForkJoinPool}. Symbolic links are copied as links, not followed.
+   * <p>
+   * File system calls are made via {@link ForkJoinPool#managedBlock(ForkJoinPool.ManagedBlocker)},
+   * so the common pool may add compensating threads rather than having all its workers wait for
+   * I/O.
+   *
+   * @param source The file or directory to copy.
+   * @param target The target path (see
+   *          {@link #copyRecursively(Path, Path, ForkJoinPool, Consumer, CopyOption...)}).
+   * @return The number of copied entries (files, links and directories).
+   * @throws IOException if any entry could not be copied (after attempting to copy all others), or
+   *           if the target is inside the source directory.
+   * @see #copyRecursively(Path, Path, ForkJoinPool, Consumer, CopyOption...)
+   */
+  public static long copyRecursively(Path source, Path target) throws IOException {
+    return copyRecursively(source, target, ForkJoinPool.commonPool(), null);
+  }
+
+  /**
+   * Copies the given file or directory tree to the given target. Symbolic links are copied as
+   * links, not followed.
+   * <p>
+   * The target (and any directory in the target tree) may already exist as a directory, in which
+   * case it is reused, and the source entries are copied into it. Existing files and links in the
+   * target tree are only replaced if {@link java.nio.file.StandardCopyOption#REPLACE_EXISTING} is
+   * specified; otherwise, they are reported as errors.
+   * <p>
+   * Errors do not stop the operation. Instead, they are aggregated into a single
+   * {@link IOException}, which is thrown at the end (with the first error as its cause, and
+   * further errors as suppressed exceptions).
+   *
+   * @param source The file or directory to copy.
+   * @param target The target path, which must not be inside the source directory.
+   * @param pool The pool to process subtrees in parallel, or {@code null} to copy serially in the
+   *          current thread (which may be preferable for spinning disks).
+   * @param progress If not {@code null}, called with the source path of each copied entry,
+   *          potentially concurrently from multiple threads.
+   * @param options Options for {@link Files#copy(Path, Path, CopyOption...)}.
+   * @return The number of copied entries (files, links and directories).
+   * @throws IOException if any entry could not be copied (after attempting to copy all others), or
+   *           if the target is inside the source directory.
+   */
+  public static long copyRecursively(Path source, Path target, @Nullable ForkJoinPool pool,
+      @Nullable Consumer<Path> progress, CopyOption... options) throws IOException {
+    return PathTreeOperation.copy(source, target, pool, progress, options);
+  }
+
   /**
    * Converts the given URL to a Path, if possible.
    *
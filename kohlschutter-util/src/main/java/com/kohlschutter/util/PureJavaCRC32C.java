@@ -0,0 +1,69 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.util.zip.Checksum;
+
+/**
+ * A pure-Java implementation of CRC-32C (Castagnoli), as used on Java 8, where
+ * {@code java.util.zip.CRC32C} is not available.
+ *
+ * @author Christian Kohlschütter
+ */
+final class PureJavaCRC32C implements Checksum {
+  private static final int[] TABLE = new int[256];
+
+  static {
+    for (int n = 0; n < 256; n++) {
+      int c = n;
+      for (int k = 0; k < 8; k++) {
+        c = (c & 1) != 0 ? (c >>> 1) ^ 0x82F63B78 : c >>> 1;
+      }
+      TABLE[n] = c;
+    }
+  }
+
+  private int crc = 0xFFFFFFFF;
+
+  PureJavaCRC32C() {
+  }
+
+  @Override
+  public void update(int b) {
+    crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xFF];
+  }
+
+  @Override
+  public void update(byte[] b, int off, int len) {
+    int c = crc;
+    for (int i = off, end = off + len; i < end; i++) {
+      c = (c >>> 8) ^ TABLE[(c ^ b[i]) & 0xFF];
+    }
+    crc = c;
+  }
+
+  @Override
+  public long getValue() {
+    return (~crc) & 0xFFFFFFFFL;
+  }
+
+  @Override
+  public void reset() {
+    crc = 0xFFFFFFFF;
+  }
+}
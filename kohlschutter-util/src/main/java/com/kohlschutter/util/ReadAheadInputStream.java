@@ -0,0 +1,240 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An {@link InputStream} that reads ahead from another {@link InputStream} in the background, so
+ * the consumer does not have to wait for every read of the underlying stream.
+ * <p>
+ * A background reader fills a bounded ring of buffers ahead of the consumer; the number of buffers
+ * (the read-ahead depth) and their size are configurable. The reader stops when the ring is full,
+ * and resumes as soon as the consumer has drained a buffer. Errors from the underlying stream
+ * (including {@link Error}s) are rethrown to the consumer once it has read all data before the
+ * error.
+ * <p>
+ * Instances are not thread-safe (apart from {@link #close()}), like most {@link InputStream}s.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class ReadAheadInputStream extends InputStream {
+  private static final Chunk EOF = new Chunk(new byte[0]);
+
+  private final InputStream in;
+  private final BlockingQueue<Chunk> filled;
+  private final BlockingQueue<Chunk> free;
+  private final AtomicBoolean closed = new AtomicBoolean();
+  private final Object readLock = new Object();
+
+  private Chunk current;
+  private int pos;
+
+  private ReadAheadInputStream(InputStream in, int bufferSize, int depth) {
+    super();
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("bufferSize");
+    } else if (depth <= 0) {
+      throw new IllegalArgumentException("depth");
+    }
+    this.in = Objects.requireNonNull(in);
+    this.filled = new ArrayBlockingQueue<>(depth + 1); // + 1 for EOF/error, so put never blocks
+    this.free = new ArrayBlockingQueue<>(depth + 1); // + 1 for the stop signal
+    for (int i = 0; i < depth; i++) {
+      free.add(new Chunk(new byte[bufferSize]));
+    }
+  }
+
+  /**
+   * Creates a new {@link ReadAheadInputStream} with a read-ahead depth of 4 buffers of 64 KiB each,
+   * reading on a new daemon thread.
+   *
+   * @param in The underlying stream.
+   * @return The new stream.
+   */
+  public static ReadAheadInputStream of(InputStream in) {
+    return of(in, 64 * 1024, 4, null);
+  }
+
+  /**
+   * Creates a new {@link ReadAheadInputStream}.
+   * <p>
+   * The background reader occupies a thread of the given executor for as long as the stream is
+   * being read (consider an executor that creates a new virtual thread per task, where available).
+   *
+   * @param in The underlying stream.
+   * @param bufferSize The size of each buffer.
+   * @param depth The number of buffers to read ahead.
+   * @param executor The executor to run the background reader on, or {@code null} to use a new
+   *          daemon thread.
+   * @return The new stream.
+   * @throws RejectedExecutionException if the executor rejects the background reader.
+   */
+  public static ReadAheadInputStream of(InputStream in, int bufferSize, int depth,
+      Executor executor) {
+    ReadAheadInputStream stream = new ReadAheadInputStream(in, bufferSize, depth);
+    if (executor == null) {
+      Thread t = new Thread(stream::readAhead, "ReadAheadInputStream");
+      t.setDaemon(true);
+      t.start();
+    } else {
+      executor.execute(stream::readAhead);
+    }
+    return stream;
+  }
+
+  @SuppressWarnings({"PMD.AvoidCatchingGenericException", "PMD.AvoidCatchingThrowable"})
+  private void readAhead() {
+    try {
+      while (!closed.get()) {
+        Chunk chunk = free.take();
+        int read;
+        synchronized (readLock) {
+          if (closed.get()) {
+            break;
+          }
+          read = in.read(chunk.buf);
+        }
+        if (read == -1) {
+          filled.put(EOF);
+          break;
+        } else {
+          chunk.length = read;
+          filled.put(chunk);
+        }
+      }
+    } catch (InterruptedException e) {
+      filled.offer(new Chunk(new InterruptedIOException("Background reader interrupted")));
+    } catch (Throwable t) { // NOPMD
+      // including Errors, which must not leave the consumer waiting forever
+      filled.offer(new Chunk(t));
+    }
+  }
+
+  /**
+   * Returns the current chunk, if it has unread data, or waits for the next chunk.
+   *
+   * @return The chunk with unread data, or {@code null} at the end of the stream.
+   * @throws IOException on error.
+   */
+  private Chunk chunk() throws IOException {
+    if (closed.get()) {
+      throw new IOException("Stream closed");
+    }
+    Chunk c = current;
+    while (c == null || (c.error == null && c != EOF && pos == c.length)) { // NOPMD
+      if (c != null) {
+        free.offer(c);
+      }
+      try {
+        c = filled.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+      current = c;
+      pos = 0;
+    }
+    if (c.error != null) {
+      if (c.error instanceof IOException) {
+        throw (IOException) c.error;
+      }
+      throw ExceptionUtil.unwrapToUncheckedException(c.error);
+    }
+    return c == EOF ? null : c; // NOPMD
+  }
+
+  @Override
+  public int read() throws IOException {
+    Chunk c = chunk();
+    if (c == null) {
+      return -1;
+    }
+    return c.buf[pos++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    } else if (len == 0) {
+      return 0;
+    }
+    Chunk c = chunk();
+    if (c == null) {
+      return -1;
+    }
+    int n = Math.min(len, c.length - pos);
+    System.arraycopy(c.buf, pos, b, off, n);
+    pos += n;
+    return n;
+  }
+
+  @Override
+  public int available() throws IOException {
+    if (closed.get()) {
+      throw new IOException("Stream closed");
+    }
+    Chunk c = current;
+    return c == null || c.error != null ? 0 : c.length - pos;
+  }
+
+  /**
+   * Stops the background reader, and closes the underlying stream.
+   * <p>
+   * If the background reader is currently reading from the underlying stream, the underlying
+   * stream is closed only after that read has returned. Only the first call has an effect.
+   *
+   * @throws IOException on error.
+   */
+  @Override
+  public void close() throws IOException {
+    if (!closed.compareAndSet(false, true)) {
+      return;
+    }
+    free.offer(EOF); // wakes up the background reader, if waiting for a free buffer
+    synchronized (readLock) {
+      // the background reader has left in.read, and will not enter it again
+      in.close();
+    }
+  }
+
+  private static final class Chunk {
+    private final byte[] buf;
+    private final Throwable error;
+    private int length;
+
+    Chunk(byte[] buf) {
+      this.buf = buf;
+      this.error = null;
+    }
+
+    Chunk(Throwable error) {
+      this.buf = new byte[0];
+      this.error = error;
+    }
+  }
+}
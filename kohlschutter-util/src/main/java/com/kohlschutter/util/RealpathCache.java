@@ -0,0 +1,357 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A bounded cache for {@link PathUtil#partialRealpath(Path, RealpathCache)}.
+ * <p>
+ * Resolved paths are cached per path prefix, so resolving many paths under the same directories
+ * only costs one {@link Path#toRealPath(java.nio.file.LinkOption...)} call for the parent
+ * directory (once), plus one call per distinct path. Non-existing paths are cached as well.
+ * <p>
+ * Cached entries are invalidated either after a fixed time-to-live (see
+ * {@link #newInstance(int, long, TimeUnit)}), or when a {@link WatchService} reports that an
+ * entry was created or deleted in one of the resolved directories or their ancestors (see
+ * {@link #newWatchingInstance(int)}). For paths that are resolved through symbolic links, the
+ * directories containing these links are watched as well, so retargeting a link invalidates all
+ * paths resolved through it. Note that some {@link WatchService} implementations poll the
+ * file system, and may report changes only after several seconds.
+ *
+ * @author Christian Kohlschütter
+ */
+public final class RealpathCache implements Closeable {
+  private final int maxEntries;
+  private final long ttlNanos;
+  private final @Nullable WatchService watcher;
+  private final Map<Path, CacheEntry> entries;
+  private final Map<Path, WatchKey> watched = new HashMap<>();
+  private long generation;
+  private long hitCount;
+  private long missCount;
+  private boolean closed;
+
+  private RealpathCache(int maxEntries, long ttlNanos, @Nullable WatchService watcher) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("maxEntries");
+    }
+    this.maxEntries = maxEntries;
+    this.ttlNanos = ttlNanos;
+    this.watcher = watcher;
+    this.entries = new LinkedHashMap<Path, CacheEntry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Path, CacheEntry> eldest) {
+        return size() > RealpathCache.this.maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Creates a new cache whose entries expire after the given time-to-live.
+   *
+   * @param maxEntries The maximum number of cached paths (including prefixes).
+   * @param ttl The time-to-live.
+   * @param unit The time unit of {@code ttl}.
+   * @return The new cache.
+   */
+  public static RealpathCache newInstance(int maxEntries, long ttl, TimeUnit unit) {
+    if (ttl <= 0) {
+      throw new IllegalArgumentException("ttl");
+    }
+    return new RealpathCache(maxEntries, unit.toNanos(ttl), null);
+  }
+
+  /**
+   * Creates a new cache whose entries are invalidated using a {@link WatchService} on the default
+   * file system.
+   * <p>
+   * Only absolute paths of the default file system are cached; other paths are resolved directly.
+   * The cache should be {@link #close() closed} when no longer needed.
+   *
+   * @param maxEntries The maximum number of cached paths (including prefixes), and of watched
+   *          directories.
+   * @return The new cache.
+   * @throws IOException on error.
+   */
+  public static RealpathCache newWatchingInstance(int maxEntries) throws IOException {
+    return new RealpathCache(maxEntries, 0, FileSystems.getDefault().newWatchService());
+  }
+
+  /**
+   * Returns the number of calls that were answered from the cache.
+   *
+   * @return The hit count.
+   */
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * Returns the number of calls that were not answered (completely) from the cache.
+   *
+   * @return The miss count.
+   */
+  public synchronized long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * Removes all entries from the cache.
+   */
+  public synchronized void clear() {
+    generation++;
+    entries.clear();
+    for (WatchKey key : watched.values()) {
+      key.cancel();
+    }
+    watched.clear();
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      clear();
+      closed = true;
+    }
+    if (watcher != null) {
+      watcher.close();
+    }
+  }
+
+  Path partialRealpath(Path p) {
+    if (p.getNameCount() == 0 || (watcher != null && (!p.isAbsolute() || p
+        .getFileSystem() != FileSystems.getDefault()))) {
+      return PathUtil.partialRealpath(p);
+    }
+
+    long gen;
+    synchronized (this) {
+      if (closed) {
+        return PathUtil.partialRealpath(p);
+      }
+      drainEvents();
+      CacheEntry e = lookup(p);
+      if (e != null) {
+        hitCount++;
+        return e.path;
+      }
+      missCount++;
+      gen = generation;
+    }
+    return resolve(p, gen).path;
+  }
+
+  private CacheEntry resolve(Path p, long gen) {
+    CacheEntry e = lookupSync(p);
+    if (e != null) {
+      return e;
+    }
+
+    Path parent = p.getParent();
+    if (parent == null) {
+      if (p.getNameCount() == 0) {
+        e = new CacheEntry(p, true, null, null);
+      } else {
+        e = resolveChild(null, p);
+      }
+    } else {
+      CacheEntry pe = lookupSync(parent);
+      if (pe == null) {
+        @Nullable Path real;
+        try {
+          real = parent.toRealPath();
+        } catch (IOException ex) {
+          real = null;
+        }
+        if (real != null && real.equals(parent.toAbsolutePath().normalize())) {
+          pe = new CacheEntry(real, true, real.getParent(), null);
+          put(parent, pe, gen);
+        } else {
+          // missing, or resolved through a symbolic link; resolve component-wise, so the entry
+          // depends on each directory that contains such a link
+          pe = resolve(parent, gen);
+        }
+      }
+      Path filename = p.getFileName();
+      e = resolveChild(pe, filename == null ? p : filename);
+    }
+    put(p, e, gen);
+    return e;
+  }
+
+  /**
+   * Resolves a single path component, like one step of the fallback loop in
+   * {@link PathUtil#partialRealpath(Path)}.
+   */
+  private static CacheEntry resolveChild(@Nullable CacheEntry parent, Path name) {
+    if (parent == null) {
+      return resolveExisting(name, null, null);
+    } else if (!parent.exists) {
+      return new CacheEntry(parent.path.resolve(name), false, parent.dir, parent);
+    } else {
+      return resolveExisting(parent.path.resolve(name), parent.path, parent);
+    }
+  }
+
+  private static CacheEntry resolveExisting(Path path, @Nullable Path dir,
+      @Nullable CacheEntry parent) {
+    try {
+      return new CacheEntry(path.toRealPath(), true, dir, parent);
+    } catch (IOException e) {
+      return new CacheEntry(path, Files.exists(path), dir, parent);
+    }
+  }
+
+  private synchronized @Nullable CacheEntry lookupSync(Path p) {
+    return lookup(p);
+  }
+
+  private @Nullable CacheEntry lookup(Path p) {
+    CacheEntry e = entries.get(p);
+    if (e != null && ttlNanos != 0 && System.nanoTime() - e.expiresAt > 0) {
+      entries.remove(p);
+      return null;
+    }
+    return e;
+  }
+
+  private synchronized void put(Path p, CacheEntry e, long gen) {
+    if (gen != generation || closed) {
+      // invalidated while resolving
+      return;
+    }
+    if (watcher != null) {
+      for (Path d : e.dependencies) {
+        if (!watch(d)) {
+          return;
+        }
+      }
+    }
+    if (ttlNanos != 0) {
+      e.expiresAt = System.nanoTime() + ttlNanos;
+    }
+    entries.put(p, e);
+  }
+
+  /**
+   * Makes sure that the given directory and all its ancestors are watched.
+   */
+  private boolean watch(Path dir) {
+    for (Path d = dir; d != null && !watched.containsKey(d); d = d.getParent()) {
+      if (watched.size() >= maxEntries) {
+        clear();
+        return false;
+      }
+      try {
+        watched.put(d, d.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE));
+      } catch (IOException | ClosedWatchServiceException e) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void drainEvents() {
+    if (watcher == null) {
+      return;
+    }
+    WatchKey key;
+    while ((key = watcher.poll()) != null) {
+      Path dir = (Path) key.watchable();
+      for (WatchEvent<?> event : key.pollEvents()) {
+        Object context = event.context();
+        if (context instanceof Path) {
+          // only entries looked up in dir, and entries below the changed child are affected
+          invalidate(dir, dir.resolve((Path) context));
+        } else {
+          invalidate(dir, dir);
+        }
+      }
+      if (!key.reset()) {
+        invalidate(dir, dir);
+        watched.remove(dir, key);
+      }
+    }
+  }
+
+  private void invalidate(Path dir, Path subtree) {
+    generation++;
+    for (Iterator<CacheEntry> it = entries.values().iterator(); it.hasNext();) {
+      for (Path d : it.next().dependencies) {
+        if (d.equals(dir) || d.startsWith(subtree)) {
+          it.remove();
+          break;
+        }
+      }
+    }
+  }
+
+  private static final class CacheEntry {
+    private static final Path[] NO_PATHS = new Path[0];
+
+    private final Path path;
+    private final boolean exists;
+    private final @Nullable Path dir;
+    private final Path[] dependencies;
+    private long expiresAt;
+
+    /**
+     * Creates a new entry.
+     *
+     * @param path The (partially) resolved path.
+     * @param exists Whether further components should be checked for existence.
+     * @param dir The (real) directory whose changes invalidate this entry, or {@code null}.
+     * @param parent The entry this one was resolved from, whose dependencies are inherited, or
+     *          {@code null}.
+     */
+    CacheEntry(Path path, boolean exists, @Nullable Path dir, @Nullable CacheEntry parent) {
+      this.path = path;
+      this.exists = exists;
+      this.dir = dir;
+
+      Path[] inherited = parent == null ? NO_PATHS : parent.dependencies;
+      if (dir == null || Arrays.asList(inherited).contains(dir)) {
+        this.dependencies = inherited;
+      } else {
+        this.dependencies = Arrays.copyOf(inherited, inherited.length + 1);
+        dependencies[inherited.length] = dir;
+      }
+    }
+  }
+}
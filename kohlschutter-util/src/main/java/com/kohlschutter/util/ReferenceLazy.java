@@ -0,0 +1,226 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A {@link Lazy} that holds its value via a {@link SoftReference} or {@link WeakReference}, so the
+ * value can be reclaimed by the garbage collector, and is transparently computed again when needed.
+ * <p>
+ * Only one thread at a time calls the supplier; concurrent callers wait for its result.
+ *
+ * @param <V> The object type.
+ * @author Christian Kohlschütter
+ * @see Lazy#ofSoft(Supplier)
+ * @see Lazy#ofWeak(Supplier)
+ */
+public final class ReferenceLazy<V> implements Lazy<V> {
+  /**
+   * Placeholder for a {@code null} value (never reclaimed).
+   */
+  private static final Object NULL = new Object();
+
+  private final Supplier<V> supplier;
+  private final boolean soft;
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private volatile Reference<Object> ref;
+  private volatile long computationCount; // written while holding lock
+  private volatile long recomputationCount; // written while holding lock
+
+  ReferenceLazy(Supplier<V> supplier, boolean soft) {
+    this.supplier = Objects.requireNonNull(supplier);
+    this.soft = soft;
+  }
+
+  /**
+   * Returns the object, computing it if this is the first call, or if the previous value has been
+   * reclaimed by the garbage collector.
+   *
+   * @return The object.
+   * @throws IllegalStateException if called recursively from within the supplier.
+   */
+  @Override
+  public V get() {
+    Reference<Object> r = ref;
+    Object v;
+    if (r != null && (v = r.get()) != null) {
+      return unmask(v);
+    }
+    try {
+      return compute(-1, false);
+    } catch (InterruptedException | TimeoutException e) {
+      throw new IllegalStateException(e); // unreachable
+    }
+  }
+
+  /**
+   * Returns the object, like {@link #get()}, but waits at most the given time for another thread
+   * that is currently computing the value. The time spent in the supplier itself (when called from
+   * the current thread) is not bounded.
+   *
+   * @param timeout The maximum time to wait.
+   * @param unit The time unit of the {@code timeout} argument.
+   * @return The object.
+   * @throws InterruptedException if the current thread was interrupted while waiting.
+   * @throws TimeoutException if the wait timed out.
+   */
+  @Override
+  public V get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    Reference<Object> r = ref;
+    Object v;
+    if (r != null && (v = r.get()) != null) {
+      return unmask(v);
+    }
+    return compute(Math.max(0, unit.toNanos(timeout)), true);
+  }
+
+  @Override
+  public V getInterruptibly() throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    Reference<Object> r = ref;
+    Object v;
+    if (r != null && (v = r.get()) != null) {
+      return unmask(v);
+    }
+    try {
+      return compute(-1, true);
+    } catch (TimeoutException e) {
+      throw new IllegalStateException(e); // unreachable
+    }
+  }
+
+  @SuppressWarnings("PMD.CompareObjectsWithEquals")
+  private V compute(long nanos, boolean interruptible) throws InterruptedException,
+      TimeoutException {
+    lockNonRecursively(nanos, interruptible);
+    try {
+      Reference<Object> r = ref;
+      Object v;
+      if (r != null && (v = r.get()) != null) {
+        return unmask(v);
+      }
+
+      V value = supplier.get();
+      computationCount++; // NOPMD
+      if (r != null) {
+        recomputationCount++; // NOPMD
+      }
+
+      // the value may have been set via #complete from within supplier.get()
+      Reference<Object> completed = ref;
+      if (completed != r && (v = completed.get()) != null) {
+        return unmask(v);
+      }
+      setValue(value);
+      return value;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Sets the value, unless a value is currently held (i.e., it was not yet computed, or it has been
+   * reclaimed by the garbage collector). This may also be called from within the supplier, in which
+   * case the given value is used instead of the one returned by the supplier.
+   *
+   * @param value the result value
+   * @return {@code true} if the value was set, else {@code false}
+   */
+  @Override
+  public boolean complete(V value) {
+    lock.lock(); // reentrant, so the supplier may call us
+    try {
+      Reference<Object> r = ref;
+      if (r != null && r.get() != null) {
+        return false;
+      }
+      setValue(value);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void lockNonRecursively(long nanos, boolean interruptible) throws InterruptedException,
+      TimeoutException {
+    if (lock.isHeldByCurrentThread()) {
+      throw new IllegalStateException("Recursive initialization");
+    }
+    if (nanos >= 0) {
+      if (!lock.tryLock(nanos, TimeUnit.NANOSECONDS)) {
+        throw new TimeoutException();
+      }
+    } else if (interruptible) {
+      lock.lockInterruptibly();
+    } else {
+      lock.lock();
+    }
+  }
+
+  private void setValue(V value) {
+    Object masked = value == null ? NULL : value;
+    ref = soft ? new SoftReference<>(masked) : new WeakReference<>(masked);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <V> V unmask(Object v) {
+    return v == NULL ? null : (V) v; // NOPMD
+  }
+
+  /**
+   * Returns the number of times the supplier has been called successfully.
+   *
+   * @return The count.
+   */
+  public long getComputationCount() {
+    return computationCount;
+  }
+
+  /**
+   * Returns the number of times the value had to be computed again, because the previous value had
+   * been reclaimed by the garbage collector.
+   *
+   * @return The count.
+   */
+  public long getRecomputationCount() {
+    return recomputationCount;
+  }
+
+  @Override
+  public String toString() {
+    Reference<Object> r = ref;
+    Object v = r == null ? null : r.get();
+    return super.toString() + "[" + (soft ? "soft" : "weak") + "; supplied=" + (v != null)
+        + "; value=" + (v == null ? null : unmask(v)) + "; recomputations=" + recomputationCount
+        + "]";
+  }
+}
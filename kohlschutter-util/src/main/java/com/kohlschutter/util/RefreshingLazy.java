@@ -0,0 +1,296 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * A {@link Lazy} whose value expires after a given time-to-live (TTL), and is then refreshed in
+ * the background.
+ * <p>
+ * After the TTL has passed, {@link #get()} still returns the stale value immediately, while exactly
+ * one refresh is started on the configured {@link Executor}. Only when a value is older than the
+ * maximum staleness bound (or when there is no value yet), callers block until a new value has
+ * been computed. Concurrent callers share a single computation.
+ * <p>
+ * If a background refresh fails, the stale value is kept, and another refresh is attempted upon
+ * the next call to {@link #get()}.
+ *
+ * @param <V> The object type.
+ * @author Christian Kohlschütter
+ */
+public final class RefreshingLazy<V> implements Lazy<V> {
+  private final Supplier<V> supplier;
+  private final long ttlNanos;
+  private final long maxStalenessNanos;
+  private final Executor executor;
+
+  private volatile Entry<V> entry;
+  private final AtomicReference<Computation<V>> inflight = new AtomicReference<>();
+
+  private static final class Entry<V> {
+    private final V value;
+    private final long createdAt;
+
+    Entry(V value, long createdAt) {
+      this.value = value;
+      this.createdAt = createdAt;
+    }
+  }
+
+  /**
+   * A computation in progress, along with the thread that runs the supplier.
+   */
+  @SuppressWarnings("serial")
+  private static final class Computation<V> extends CompletableFuture<Entry<V>> {
+    private volatile Thread thread;
+  }
+
+  private RefreshingLazy(Supplier<V> supplier, long ttlNanos, long maxStalenessNanos,
+      Executor executor) {
+    this.supplier = Objects.requireNonNull(supplier);
+    this.ttlNanos = ttlNanos;
+    this.maxStalenessNanos = maxStalenessNanos;
+    this.executor = Objects.requireNonNull(executor);
+  }
+
+  /**
+   * Creates a new {@link RefreshingLazy}, using the common {@link ForkJoinPool} for background
+   * refreshes.
+   *
+   * @param <V> The object type.
+   * @param supplier The object supplier.
+   * @param ttl The time after which a value is considered stale, and refreshed in the background.
+   * @param maxStaleness The time after which a value must no longer be returned, and callers have
+   *          to wait for a new value (must not be smaller than {@code ttl}).
+   * @param unit The time unit for {@code ttl} and {@code maxStaleness}.
+   * @return The new instance.
+   * @throws IllegalArgumentException if {@code ttl} is not positive, or if {@code maxStaleness} is
+   *           smaller than {@code ttl}.
+   */
+  @SuppressWarnings("PMD.ShortMethodName")
+  public static <V> RefreshingLazy<V> of(Supplier<V> supplier, long ttl, long maxStaleness,
+      TimeUnit unit) {
+    return of(supplier, ttl, maxStaleness, unit, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates a new {@link RefreshingLazy}, using the given {@link Executor} for background
+   * refreshes.
+   *
+   * @param <V> The object type.
+   * @param supplier The object supplier.
+   * @param ttl The time after which a value is considered stale, and refreshed in the background.
+   * @param maxStaleness The time after which a value must no longer be returned, and callers have
+   *          to wait for a new value (must not be smaller than {@code ttl}).
+   * @param unit The time unit for {@code ttl} and {@code maxStaleness}.
+   * @param executor The executor to run background refreshes on.
+   * @return The new instance.
+   * @throws IllegalArgumentException if {@code ttl} is not positive, or if {@code maxStaleness} is
+   *           smaller than {@code ttl}.
+   */
+  @SuppressWarnings("PMD.ShortMethodName")
+  public static <V> RefreshingLazy<V> of(Supplier<V> supplier, long ttl, long maxStaleness,
+      TimeUnit unit, Executor executor) {
+    if (ttl <= 0) {
+      throw new IllegalArgumentException("ttl must be positive");
+    }
+    if (maxStaleness < ttl) {
+      throw new IllegalArgumentException("maxStaleness must not be smaller than ttl");
+    }
+    return new RefreshingLazy<>(supplier, unit.toNanos(ttl), unit.toNanos(maxStaleness),
+        executor);
+  }
+
+  /**
+   * Returns the current value. If the value is older than the TTL, a background refresh is
+   * started, and the stale value is returned. If there is no value yet, or if the value is older
+   * than the maximum staleness, this call blocks until a new value is available.
+   *
+   * @return The value.
+   * @throws IllegalStateException if called recursively from within the supplier, and this call
+   *           would have to wait for a new value.
+   */
+  @Override
+  public V get() {
+    Entry<V> e = usableEntry();
+    if (e != null) {
+      return e.value;
+    }
+    try {
+      return load().join().value;
+    } catch (CompletionException ex) {
+      throw ExceptionUtil.unwrapToUncheckedException(ex);
+    }
+  }
+
+  /**
+   * Returns the current value, like {@link #get()}, but waits at most the given time for a new
+   * value to be computed by another thread.
+   *
+   * @param timeout The maximum time to wait.
+   * @param unit The time unit of the {@code timeout} argument.
+   * @return The value.
+   * @throws InterruptedException if the current thread was interrupted while waiting.
+   * @throws TimeoutException if the wait timed out.
+   */
+  @Override
+  public V get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    Entry<V> e = usableEntry();
+    if (e != null) {
+      return e.value;
+    }
+    try {
+      return load().get(timeout, unit).value;
+    } catch (ExecutionException ex) {
+      throw ExceptionUtil.unwrapToUncheckedException(ex);
+    }
+  }
+
+  @Override
+  public V getInterruptibly() throws InterruptedException {
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    Entry<V> e = usableEntry();
+    if (e != null) {
+      return e.value;
+    }
+    try {
+      return load().get().value;
+    } catch (ExecutionException ex) {
+      throw ExceptionUtil.unwrapToUncheckedException(ex);
+    }
+  }
+
+  /**
+   * Returns the current entry if it may still be returned, starting a background refresh if it
+   * has exceeded its TTL.
+   *
+   * @return The entry, or {@code null} if callers have to wait for a new value.
+   */
+  private Entry<V> usableEntry() {
+    Entry<V> e = entry;
+    if (e != null) {
+      long age = System.nanoTime() - e.createdAt;
+      if (age < ttlNanos) {
+        return e;
+      } else if (age < maxStalenessNanos) {
+        refreshInBackground();
+        return e;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Sets the value if there is no value yet, or if the current value has exceeded its TTL. The new
+   * value is then considered fresh.
+   * <p>
+   * Unlike for other {@link Lazy} implementations, this may succeed more than once: once the TTL
+   * has passed, the value can be replaced again. A refresh that is in progress while this method is
+   * called still replaces the value once it finishes.
+   *
+   * @param value the new value
+   * @return {@code true} if the value was set, {@code false} if a fresh value was already present.
+   */
+  @Override
+  public synchronized boolean complete(V value) {
+    Entry<V> e = entry;
+    long now = System.nanoTime();
+    if (e != null && (now - e.createdAt) < ttlNanos) {
+      return false;
+    }
+    entry = new Entry<>(value, now);
+    return true;
+  }
+
+  private void refreshInBackground() {
+    Computation<V> cf = new Computation<>();
+    if (!inflight.compareAndSet(null, cf)) {
+      return; // another refresh is already in progress
+    }
+    try {
+      executor.execute(() -> compute(cf));
+    } catch (RejectedExecutionException e) {
+      inflight.compareAndSet(cf, null);
+      cf.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Returns the computation in progress, or starts one in the current thread (and returns it once
+   * it has finished).
+   *
+   * @return The computation.
+   */
+  @SuppressWarnings("PMD.CompareObjectsWithEquals")
+  private Computation<V> load() {
+    Computation<V> cf;
+    while ((cf = inflight.get()) == null) {
+      Computation<V> newCf = new Computation<>();
+      if (inflight.compareAndSet(null, newCf)) {
+        compute(newCf);
+        cf = newCf;
+        break;
+      }
+    }
+    if (cf.thread == Thread.currentThread()) {
+      // waiting for our own computation would never return
+      throw new IllegalStateException("Recursive initialization");
+    }
+    return cf;
+  }
+
+  @SuppressWarnings("PMD.AvoidCatchingThrowable")
+  private void compute(Computation<V> cf) {
+    cf.thread = Thread.currentThread();
+    try {
+      Entry<V> e = new Entry<>(supplier.get(), System.nanoTime());
+      synchronized (this) {
+        entry = e;
+      }
+      cf.complete(e);
+    } catch (Throwable t) { // NOPMD
+      cf.completeExceptionally(t);
+    } finally {
+      cf.thread = null; // NOPMD
+      inflight.compareAndSet(cf, null);
+    }
+  }
+
+  @Override
+  public String toString() {
+    Entry<V> e = entry;
+    return super.toString() + "[supplied=" + (e != null) + "; value=" + (e == null ? null
+        : e.value) + "]";
+  }
+}
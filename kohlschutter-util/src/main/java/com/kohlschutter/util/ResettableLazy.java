@@ -0,0 +1,190 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Supplier;
+
+/**
+ * A {@link Lazy} that can be invalidated, so the value is computed again upon the next call to
+ * {@link #get()}.
+ * <p>
+ * Each invalidation starts a new generation. A caller racing with an invalidation sees either the
+ * value of the old generation or that of the new one, never a mix. The generation number can be
+ * used by downstream caches to cheaply detect changes without re-reading the value.
+ *
+ * @param <V> The object type.
+ * @author Christian Kohlschütter
+ */
+public final class ResettableLazy<V> implements Lazy<V> {
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<ResettableLazy, Generation> CURRENT =
+      AtomicReferenceFieldUpdater.newUpdater(ResettableLazy.class, Generation.class, "current");
+
+  private final Supplier<V> supplier;
+  private volatile Generation<V> current;
+
+  private static final class Generation<V> {
+    private final long number;
+    private final Lazy<V> lazy;
+
+    Generation(long number, Lazy<V> lazy) {
+      this.number = number;
+      this.lazy = lazy;
+    }
+  }
+
+  private ResettableLazy(Supplier<V> supplier) {
+    this.supplier = Objects.requireNonNull(supplier);
+    this.current = new Generation<>(0, Lazy.of(supplier));
+  }
+
+  /**
+   * Creates a new {@link ResettableLazy}, using the given supplier to supply the object upon the
+   * first call to {@link #get()} after creation or invalidation.
+   *
+   * @param <V> The object type.
+   * @param supplier The object supplier.
+   * @return The new instance.
+   */
+  @SuppressWarnings("PMD.ShortMethodName")
+  public static <V> ResettableLazy<V> of(Supplier<V> supplier) {
+    return new ResettableLazy<>(supplier);
+  }
+
+  /**
+   * Returns the object of the current generation, computing it if necessary.
+   *
+   * @return The object.
+   */
+  @Override
+  public V get() {
+    return current.lazy.get();
+  }
+
+  @Override
+  public V get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+    return current.lazy.get(timeout, unit);
+  }
+
+  @Override
+  public V getInterruptibly() throws InterruptedException {
+    return current.lazy.getInterruptibly();
+  }
+
+  /**
+   * If the current generation has not been completed yet, sets its value.
+   *
+   * @param value the result value
+   * @return {@code true} if this invocation caused the current generation to transition to a
+   *         completed state, else {@code false}
+   */
+  @Override
+  public boolean complete(V value) {
+    return current.lazy.complete(value);
+  }
+
+  /**
+   * Invalidates the current value, starting a new generation. The value is computed again upon the
+   * next call to {@link #get()}. Callers already waiting for a computation in progress still
+   * receive the value of the old generation.
+   *
+   * @return The new generation number.
+   */
+  public long invalidate() {
+    Generation<V> g;
+    Generation<V> next;
+    do {
+      g = current;
+      next = new Generation<>(g.number + 1, Lazy.of(supplier));
+    } while (!CURRENT.compareAndSet(this, g, next));
+    return next.number;
+  }
+
+  /**
+   * Returns the current generation number, which starts at {@code 0} and is incremented upon every
+   * call to {@link #invalidate()}.
+   * <p>
+   * Note that calling {@link #get()} and then this method may pair a value with a newer generation
+   * number; use {@link #getSnapshot()} to obtain both consistently.
+   *
+   * @return The generation number.
+   */
+  public long getGeneration() {
+    return current.number;
+  }
+
+  /**
+   * Returns the object of the current generation (computing it if necessary), along with that
+   * generation's number.
+   *
+   * @return The snapshot.
+   */
+  public Snapshot<V> getSnapshot() {
+    Generation<V> g = current;
+    return new Snapshot<>(g.lazy.get(), g.number);
+  }
+
+  @Override
+  public String toString() {
+    Generation<V> g = current;
+    return super.toString() + "[generation=" + g.number + "; " + g.lazy + "]";
+  }
+
+  /**
+   * A value of a {@link ResettableLazy}, along with the number of the generation it belongs to.
+   *
+   * @param <V> The object type.
+   * @see ResettableLazy#getSnapshot()
+   */
+  public static final class Snapshot<V> {
+    private final V value;
+    private final long generation;
+
+    Snapshot(V value, long generation) {
+      this.value = value;
+      this.generation = generation;
+    }
+
+    /**
+     * Returns the value.
+     *
+     * @return The value.
+     */
+    public V getValue() {
+      return value;
+    }
+
+    /**
+     * Returns the number of the generation the value belongs to.
+     *
+     * @return The generation number.
+     */
+    public long getGeneration() {
+      return generation;
+    }
+
+    @Override
+    public String toString() {
+      return super.toString() + "[generation=" + generation + "; value=" + value + "]";
+    }
+  }
+}
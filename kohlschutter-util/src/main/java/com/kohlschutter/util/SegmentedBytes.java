@@ -0,0 +1,308 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sequence of bytes stored in a list of fixed-size chunks (a "rope"), rather than in one
+ * contiguous array.
+ * <p>
+ * The chunks are taken from a dedicated pool, which keeps up to 1 MiB worth of chunks per
+ * processor, and are returned to the pool upon {@link #close()}. {@link InputStream}s obtained via
+ * {@link #newInputStream()} throw an {@link IOException} once this instance is closed. Chunks that
+ * have been exposed via {@link #asByteBuffers()} are not returned to the pool, so these views
+ * remain valid even after closing.
+ * <p>
+ * Instances are not modified after creation, and can be read concurrently, but must not be closed
+ * concurrently with other accesses.
+ *
+ * @author Christian Kohlschütter
+ * @see IOUtil#readAllBytesSegmented(InputStream)
+ */
+public final class SegmentedBytes implements Closeable {
+  /**
+   * The size of each chunk, well below the threshold for "humongous" objects in G1.
+   */
+  static final int CHUNK_SIZE = 64 * 1024;
+
+  private static final ByteArrayPool POOL = new ByteArrayPool(Runtime.getRuntime()
+      .availableProcessors(), 16);
+
+  private volatile byte[][] chunks; // null once closed
+  private volatile boolean exposed;
+  private final int lastChunkLength;
+  private final long size;
+
+  private SegmentedBytes(byte[][] chunks, int lastChunkLength) {
+    this.chunks = chunks;
+    this.lastChunkLength = lastChunkLength;
+    this.size = chunks.length == 0 ? 0 : (long) (chunks.length - 1) * CHUNK_SIZE
+        + lastChunkLength;
+  }
+
+  /**
+   * Reads all bytes from the given {@link InputStream}.
+   *
+   * @param in The input stream.
+   * @return The bytes.
+   * @throws IOException on error.
+   */
+  static SegmentedBytes readFrom(InputStream in) throws IOException {
+    ByteArrayPool pool = POOL;
+    List<byte[]> list = new ArrayList<>();
+    int lastLength = 0;
+    try {
+      while (true) {
+        byte[] chunk = pool.acquire(CHUNK_SIZE);
+        int read;
+        try {
+          read = IOUtil.readFully(in, chunk);
+        } catch (IOException | RuntimeException e) {
+          pool.release(chunk);
+          throw e;
+        }
+        if (read == 0) {
+          pool.release(chunk);
+          break;
+        }
+        list.add(chunk);
+        lastLength = read;
+        if (read < CHUNK_SIZE) {
+          break;
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      for (byte[] chunk : list) {
+        pool.release(chunk);
+      }
+      throw e;
+    }
+    return new SegmentedBytes(list.toArray(new byte[0][]), lastLength);
+  }
+
+  private byte[][] chunks() {
+    byte[][] c = chunks;
+    if (c == null) {
+      throw new IllegalStateException("Closed");
+    }
+    return c;
+  }
+
+  private int chunkLength(int index, byte[][] c) {
+    return index == c.length - 1 ? lastChunkLength : CHUNK_SIZE;
+  }
+
+  /**
+   * Returns the total number of bytes.
+   *
+   * @return The size.
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Returns read-only {@link ByteBuffer} views of the chunks, in order. Each buffer's position is
+   * 0, and its limit is the number of bytes in that chunk.
+   * <p>
+   * The views remain valid after {@link #close()}; the chunks are then not returned to the pool.
+   *
+   * @return The buffers.
+   */
+  public ByteBuffer[] asByteBuffers() {
+    exposed = true;
+    return wrapChunks();
+  }
+
+  private ByteBuffer[] wrapChunks() {
+    byte[][] c = chunks();
+    ByteBuffer[] buffers = new ByteBuffer[c.length];
+    for (int i = 0; i < c.length; i++) {
+      buffers[i] = ByteBuffer.wrap(c[i], 0, chunkLength(i, c)).asReadOnlyBuffer();
+    }
+    return buffers;
+  }
+
+  /**
+   * Returns a new {@link InputStream} that replays the bytes from the beginning. This method may be
+   * called multiple times.
+   *
+   * @return The input stream.
+   */
+  public InputStream newInputStream() {
+    return new ReplayInputStream(chunks());
+  }
+
+  /**
+   * Writes all bytes to the given {@link OutputStream}.
+   *
+   * @param out The target.
+   * @throws IOException on error.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    byte[][] c = chunks();
+    for (int i = 0; i < c.length; i++) {
+      out.write(c[i], 0, chunkLength(i, c));
+    }
+  }
+
+  /**
+   * Writes all bytes to the given {@link WritableByteChannel}. If the channel is a
+   * {@link GatheringByteChannel}, the chunks are written with as few system calls as possible.
+   *
+   * @param out The target channel, which should be in blocking mode.
+   * @return The number of bytes written.
+   * @throws IOException on error.
+   */
+  public long writeTo(WritableByteChannel out) throws IOException {
+    ByteBuffer[] buffers = wrapChunks();
+    long total = 0;
+    if (out instanceof GatheringByteChannel) {
+      GatheringByteChannel gbc = (GatheringByteChannel) out;
+      int offset = 0;
+      while (offset < buffers.length) {
+        total += gbc.write(buffers, offset, buffers.length - offset);
+        while (offset < buffers.length && !buffers[offset].hasRemaining()) {
+          offset++;
+        }
+      }
+    } else {
+      for (ByteBuffer buf : buffers) {
+        while (buf.hasRemaining()) {
+          total += out.write(buf);
+        }
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Copies all bytes into a new, contiguous byte array.
+   *
+   * @return The byte array.
+   * @throws IllegalStateException if there are too many bytes to fit into an array.
+   */
+  public byte[] toByteArray() {
+    if (size > Integer.MAX_VALUE - 8) {
+      throw new IllegalStateException("Too large for an array: " + size);
+    }
+    byte[][] c = chunks();
+    byte[] bytes = new byte[(int) size];
+    for (int i = 0; i < c.length; i++) {
+      System.arraycopy(c[i], 0, bytes, i * CHUNK_SIZE, chunkLength(i, c));
+    }
+    return bytes;
+  }
+
+  /**
+   * Returns the chunks to the pool, unless they have been exposed via {@link #asByteBuffers()}.
+   * Calling this method more than once has no effect.
+   */
+  @Override
+  public void close() {
+    byte[][] c;
+    synchronized (this) {
+      c = chunks;
+      chunks = null;
+    }
+    if (c != null && !exposed) {
+      for (byte[] chunk : c) {
+        POOL.release(chunk);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + "[size=" + size + "]";
+  }
+
+  private final class ReplayInputStream extends InputStream {
+    private final byte[][] c;
+    private int index;
+    private int pos;
+
+    ReplayInputStream(byte[][] c) {
+      super();
+      this.c = c;
+    }
+
+    private boolean ensureAvailable() throws IOException {
+      if (chunks == null) {
+        throw new IOException("Closed");
+      }
+      while (index < c.length && pos == chunkLength(index, c)) {
+        index++;
+        pos = 0;
+      }
+      return index < c.length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!ensureAvailable()) {
+        return -1;
+      }
+      return c[index][pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (off < 0 || len < 0 || len > b.length - off) {
+        throw new IndexOutOfBoundsException();
+      } else if (len == 0) {
+        return 0;
+      } else if (!ensureAvailable()) {
+        return -1;
+      }
+      int n = Math.min(len, chunkLength(index, c) - pos);
+      System.arraycopy(c[index], pos, b, off, n);
+      pos += n;
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = 0;
+      while (skipped < n && ensureAvailable()) {
+        int k = (int) Math.min(n - skipped, chunkLength(index, c) - pos);
+        pos += k;
+        skipped += k;
+      }
+      return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+      if (chunks == null) {
+        throw new IOException("Closed");
+      }
+      long remaining = size - ((long) index * CHUNK_SIZE + pos);
+      return (int) Math.min(Integer.MAX_VALUE, Math.max(0, remaining));
+    }
+  }
+}
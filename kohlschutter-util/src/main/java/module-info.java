@@ -4,7 +4,9 @@
 module com.kohlschutter.util {
   requires static com.kohlschutter.annotations.compiletime;
   requires static org.eclipse.jdt.annotation;
+  requires static java.logging;
   requires static java.management;
+  requires static jdk.unsupported;
 
   exports com.kohlschutter.util;
 }
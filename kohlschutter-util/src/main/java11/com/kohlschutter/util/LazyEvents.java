@@ -0,0 +1,138 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emits JFR events for {@link LazyInstrumentation}.
+ * <p>
+ * The {@code jdk.jfr} module is optional; if it is not available (e.g., on a module path without
+ * it), no events are emitted.
+ *
+ * @author Christian Kohlschütter
+ */
+final class LazyEvents {
+  private static final boolean AVAILABLE = isJfrAvailable();
+
+  private LazyEvents() {
+    throw new IllegalStateException("No instances");
+  }
+
+  @SuppressWarnings("PMD.AvoidCatchingGenericException")
+  private static boolean isJfrAvailable() {
+    try {
+      return JfrEvents.isAvailable();
+    } catch (LinkageError | RuntimeException e) { // NOPMD
+      return false;
+    }
+  }
+
+  static Object beginInitialization() {
+    return AVAILABLE ? JfrEvents.beginInitialization() : null;
+  }
+
+  static void endInitialization(Object event, String name, boolean failed) {
+    if (event != null) {
+      JfrEvents.endInitialization(event, name, failed);
+    }
+  }
+
+  static Object beginWait() {
+    return AVAILABLE ? JfrEvents.beginWait() : null;
+  }
+
+  static void endWait(Object event, String name) {
+    if (event != null) {
+      JfrEvents.endWait(event, name);
+    }
+  }
+
+  /**
+   * Holds all references to {@code jdk.jfr}, so they are only resolved if JFR is available.
+   */
+  private static final class JfrEvents {
+    @Name("com.kohlschutter.util.LazyInitialization")
+    @Label("Lazy Initialization")
+    @Description("A named Lazy calling its supplier")
+    @Category({"Kohlschutter", "Lazy"})
+    static final class InitializationEvent extends Event {
+      @Label("Name")
+      String name;
+
+      @Label("Failed")
+      boolean failed;
+    }
+
+    @Name("com.kohlschutter.util.LazyWait")
+    @Label("Lazy Wait")
+    @Description("A thread waiting for another thread initializing a named Lazy")
+    @Category({"Kohlschutter", "Lazy"})
+    static final class WaitEvent extends Event {
+      @Label("Name")
+      String name;
+    }
+
+    static boolean isAvailable() {
+      new InitializationEvent().isEnabled();
+      new WaitEvent().isEnabled();
+      return true;
+    }
+
+    static Object beginInitialization() {
+      InitializationEvent event = new InitializationEvent();
+      if (!event.isEnabled()) {
+        return null;
+      }
+      event.begin();
+      return event;
+    }
+
+    static void endInitialization(Object event, String name, boolean failed) {
+      InitializationEvent e = (InitializationEvent) event;
+      e.end();
+      if (e.shouldCommit()) {
+        e.name = name;
+        e.failed = failed;
+        e.commit();
+      }
+    }
+
+    static Object beginWait() {
+      WaitEvent event = new WaitEvent();
+      if (!event.isEnabled()) {
+        return null;
+      }
+      event.begin();
+      return event;
+    }
+
+    static void endWait(Object event, String name) {
+      WaitEvent e = (WaitEvent) event;
+      e.end();
+      if (e.shouldCommit()) {
+        e.name = name;
+        e.commit();
+      }
+    }
+  }
+}
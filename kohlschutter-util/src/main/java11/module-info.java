@@ -0,0 +1,13 @@
+/**
+ * Some shared utility code.
+ */
+module com.kohlschutter.util {
+  requires static com.kohlschutter.annotations.compiletime;
+  requires static org.eclipse.jdt.annotation;
+  requires static java.logging;
+  requires static java.management;
+  requires static jdk.unsupported;
+  requires static jdk.jfr;
+
+  exports com.kohlschutter.util;
+}
@@ -21,6 +21,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.zip.Checksum;
 
 final class JavaReleaseShim {
   private JavaReleaseShim() {
@@ -28,7 +29,7 @@ final class JavaReleaseShim {
   }
 
   static byte[] readAllBytes(InputStream in) throws IOException {
-    return IOUtil.readAllBytesNaively(in);
+    return IOUtil.readAllBytesChunked(in);
   }
 
   static long getPid() {
@@ -44,6 +45,10 @@ final class JavaReleaseShim {
   }
 
   static long transferAllBytes(InputStream in, OutputStream out) throws IOException {
-    return IOUtil.transferAllBytesNaively(in, out);
+    return IOUtil.transferAllBytesPooled(in, out);
+  }
+
+  static Checksum newCRC32C() {
+    return new PureJavaCRC32C();
   }
 }
@@ -0,0 +1,128 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+public class AsyncLazyTest {
+  @Test
+  public void testGetAndCompose() throws Exception {
+    ExecutorService es = Executors.newSingleThreadExecutor();
+    try {
+      AtomicInteger calls = new AtomicInteger();
+      AsyncLazy<Integer> lazy = Lazy.ofAsync(calls::incrementAndGet, es);
+      assertFalse(lazy.isDone());
+      assertEquals("v1", lazy.getAsync().thenApply((v) -> "v" + v).toCompletableFuture().get(10,
+          TimeUnit.SECONDS));
+      assertEquals(1, lazy.get());
+      assertEquals(1, lazy.getNow(0));
+      assertTrue(lazy.isDone());
+      assertFalse(lazy.complete(2));
+      assertEquals(1, calls.get());
+    } finally {
+      es.shutdown();
+    }
+  }
+
+  @Test
+  public void testFailureResets() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    AsyncLazy<Integer> lazy = Lazy.ofAsync(() -> {
+      if (calls.incrementAndGet() == 1) {
+        throw new IllegalStateException("Expected");
+      }
+      return calls.get();
+    }, Runnable::run);
+    assertEquals("Expected", assertThrows(IllegalStateException.class, lazy::get).getMessage());
+    assertFalse(lazy.isDone());
+    assertEquals(2, lazy.get());
+    assertEquals(2, lazy.get());
+  }
+
+  @Test
+  public void testCompleteFromWithinFailingSupplier() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    AtomicReference<AsyncLazy<Integer>> ref = new AtomicReference<>();
+    AsyncLazy<Integer> lazy = Lazy.ofAsync(() -> {
+      calls.incrementAndGet();
+      assertTrue(ref.get().complete(1));
+      throw new IllegalStateException("Ignored");
+    }, Runnable::run);
+    ref.set(lazy);
+    assertEquals(1, lazy.get());
+    assertEquals(1, lazy.get());
+    assertTrue(lazy.isDone());
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void testFailureCached() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    AsyncLazy<Integer> lazy = Lazy.ofAsync(() -> {
+      calls.incrementAndGet();
+      throw new IllegalStateException("Expected");
+    }, Runnable::run, LazyFailurePolicy.cache());
+    assertThrows(IllegalStateException.class, lazy::get);
+    assertThrows(IllegalStateException.class, lazy::get);
+    assertTrue(lazy.isDone());
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void testRejectedExecutionResets() throws Exception {
+    AtomicInteger submissions = new AtomicInteger();
+    AsyncLazy<String> lazy = Lazy.ofAsync(() -> "Done", (r) -> {
+      if (submissions.incrementAndGet() == 1) {
+        throw new RejectedExecutionException();
+      }
+      r.run();
+    });
+    assertThrows(RejectedExecutionException.class, lazy::get);
+    assertEquals("Done", lazy.get());
+    assertEquals(2, submissions.get());
+  }
+
+  @Test
+  public void testRecursiveInitialization() throws Exception {
+    AtomicReference<AsyncLazy<String>> ref = new AtomicReference<>();
+    ref.set(Lazy.ofAsync(() -> ref.get().get(), Runnable::run));
+    assertEquals("Recursive initialization", assertThrows(IllegalStateException.class, ref
+        .get()::get).getMessage());
+
+    ExecutorService es = Executors.newSingleThreadExecutor();
+    try {
+      AtomicReference<AsyncLazy<String>> ref2 = new AtomicReference<>();
+      ref2.set(Lazy.ofAsync(() -> ref2.get().get(), es));
+      assertThrows(IllegalStateException.class, () -> ref2.get().get(10, TimeUnit.SECONDS));
+    } finally {
+      es.shutdown();
+    }
+  }
+}
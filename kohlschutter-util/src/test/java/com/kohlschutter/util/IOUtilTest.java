@@ -0,0 +1,545 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+public class IOUtilTest {
+  private static byte[] randomBytes(int size) {
+    byte[] bytes = new byte[size];
+    new Random(size).nextBytes(bytes);
+    return bytes;
+  }
+
+  @Test
+  public void testTransferAllBytesPooled() throws Exception {
+    for (int size : new int[] {0, 1, 4096, 4097, 1024 * 1024 + 3}) {
+      byte[] bytes = randomBytes(size);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      assertEquals(size, IOUtil.transferAllBytesPooled(new ByteArrayInputStream(bytes), out));
+      assertArrayEquals(bytes, out.toByteArray());
+    }
+
+    IOUtil.BufferPoolStats before = IOUtil.getBufferPoolStats();
+    IOUtil.transferAllBytesPooled(new ByteArrayInputStream(new byte[10]),
+        new ByteArrayOutputStream());
+    IOUtil.BufferPoolStats after = IOUtil.getBufferPoolStats();
+    assertTrue(after.getHitCount() + after.getMissCount() > before.getHitCount() + before
+        .getMissCount());
+  }
+
+  @Test
+  public void testPoolClearsReleasedBuffers() {
+    ByteArrayPool pool = new ByteArrayPool(1);
+    byte[] buf = pool.acquire(ByteArrayPool.MIN_SIZE);
+    Arrays.fill(buf, (byte) 42);
+    pool.release(buf);
+
+    byte[] again = pool.acquire(ByteArrayPool.MIN_SIZE);
+    assertSame(buf, again);
+    assertArrayEquals(new byte[ByteArrayPool.MIN_SIZE], again);
+  }
+
+  @Test
+  public void testSizeClasses() {
+    assertEquals(ByteArrayPool.MIN_SIZE, ByteArrayPool.sizeClassFor(0));
+    assertEquals(8192, ByteArrayPool.sizeClassFor(4097));
+    assertEquals(8192, ByteArrayPool.sizeClassFor(8192));
+    assertEquals(ByteArrayPool.MAX_SIZE, ByteArrayPool.sizeClassFor(Long.MAX_VALUE));
+
+    ByteArrayPool pool = new ByteArrayPool(1);
+    byte[] buf = pool.acquire(8192);
+    assertEquals(1, pool.getMissCount());
+    pool.release(buf);
+    pool.release(new byte[8192]);
+    assertEquals(1, pool.getDiscardCount());
+    assertSame(buf, pool.acquire(8192));
+    assertEquals(1, pool.getHitCount());
+  }
+
+  @Test
+  public void testTransferAllBytesViaChannels() throws Exception {
+    byte[] bytes = randomBytes(3 * 1024 * 1024 + 5);
+    Path source = Files.createTempFile("iotest", ".in");
+    Path target = Files.createTempFile("iotest", ".out");
+    try {
+      Files.write(source, bytes);
+      try (FileInputStream in = new FileInputStream(source.toFile());
+          FileOutputStream out = new FileOutputStream(target.toFile())) {
+        assertEquals(5, in.skip(5));
+        assertEquals(bytes.length - 5, IOUtil.transferAllBytes(in, out));
+        assertEquals(-1, in.read());
+      }
+      assertArrayEquals(Arrays.copyOfRange(bytes, 5, bytes.length), Files.readAllBytes(target));
+
+      try (ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(bytes));
+          FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING)) {
+        assertEquals(bytes.length, IOUtil.transferAllBytes(in, out));
+        assertEquals(bytes.length, out.position());
+      }
+      assertArrayEquals(bytes, Files.readAllBytes(target));
+
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      try (FileChannel in = FileChannel.open(source);
+          WritableByteChannel out = Channels.newChannel(bos)) {
+        assertEquals(bytes.length, IOUtil.transferAllBytes(in, out));
+      }
+      assertArrayEquals(bytes, bos.toByteArray());
+    } finally {
+      Files.deleteIfExists(source);
+      Files.deleteIfExists(target);
+    }
+  }
+
+  @Test
+  public void testReadAllBytesWithExpectedSize() throws Exception {
+    byte[] bytes = randomBytes(100_000);
+    for (long expected : new long[] {-1, 0, 1, 99_999, 100_000, 100_001, Long.MAX_VALUE}) {
+      assertArrayEquals(bytes, IOUtil.readAllBytes(new ByteArrayInputStream(bytes), expected));
+    }
+    assertArrayEquals(bytes, IOUtil.readAllBytesChunked(new ByteArrayInputStream(bytes)));
+    assertArrayEquals(new byte[0], IOUtil.readAllBytesChunked(new ByteArrayInputStream(
+        new byte[0])));
+
+    Path file = Files.createTempFile("iotest", ".bin");
+    try {
+      Files.write(file, bytes);
+      assertArrayEquals(bytes, IOUtil.readAllBytes(file));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testMapReadOnly() throws Exception {
+    byte[] bytes = randomBytes(100_000);
+    Path file = Files.createTempFile("iotest", ".bin");
+    try {
+      Files.write(file, bytes);
+      MappedFile mf = IOUtil.mapReadOnly(file);
+      try {
+        assertEquals(bytes.length, mf.size());
+        assertEquals(bytes[12_345], mf.get(12_345));
+        byte[] dst = new byte[1000];
+        mf.get(99_000, dst, 0, 1000);
+        assertArrayEquals(Arrays.copyOfRange(bytes, 99_000, 100_000), dst);
+        assertThrows(IndexOutOfBoundsException.class, () -> mf.get(100_000));
+        assertThrows(IndexOutOfBoundsException.class, () -> mf.get(99_500, dst, 0, 1000));
+      } finally {
+        mf.close();
+      }
+      mf.close();
+      assertThrows(IllegalStateException.class, () -> mf.get(0));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testMapReadOnlyCloseWhileReading() throws Exception {
+    byte[] bytes = randomBytes(100_000);
+    Path file = Files.createTempFile("iotest", ".bin");
+    try {
+      Files.write(file, bytes);
+      MappedFile mf = IOUtil.mapReadOnly(file);
+      Thread[] readers = new Thread[4];
+      AtomicInteger closedSeen = new AtomicInteger();
+      for (int i = 0; i < readers.length; i++) {
+        readers[i] = new Thread(() -> {
+          byte[] dst = new byte[bytes.length];
+          try {
+            while (true) {
+              mf.get(0, dst, 0, dst.length);
+            }
+          } catch (IllegalStateException e) {
+            closedSeen.incrementAndGet();
+          }
+        });
+        readers[i].start();
+      }
+      Thread.sleep(50);
+      mf.close();
+      for (Thread t : readers) {
+        t.join();
+      }
+      assertEquals(readers.length, closedSeen.get());
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testMapReadOnlyReader() throws Exception {
+    byte[] bytes = randomBytes(4 * 1024 * 1024);
+    Path file = Files.createTempFile("iotest", ".bin");
+    try {
+      Files.write(file, bytes);
+      MappedFile mf = IOUtil.mapReadOnly(file);
+      MappedFile.Reader reader = mf.reader();
+      try {
+        mf.close(); // the reader keeps the mapping alive
+        assertThrows(IllegalStateException.class, mf::reader);
+
+        AtomicReference<Throwable> otherThread = new AtomicReference<>();
+        Thread t = new Thread(() -> {
+          try {
+            reader.get(0);
+          } catch (Throwable e) { // NOPMD
+            otherThread.set(e);
+          }
+        });
+        t.start();
+        t.join();
+        assertTrue(otherThread.get() instanceof IllegalStateException);
+
+        MappedByteBuffer plain;
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+          plain = fc.map(FileChannel.MapMode.READ_ONLY, 0, bytes.length);
+        }
+
+        long plainNanos = Long.MAX_VALUE;
+        long readerNanos = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+          long time = System.nanoTime();
+          int plainSum = 0;
+          for (int i = 0; i < bytes.length; i++) {
+            plainSum += plain.get(i);
+          }
+          plainNanos = Math.min(plainNanos, System.nanoTime() - time);
+
+          time = System.nanoTime();
+          int readerSum = 0;
+          for (int i = 0; i < bytes.length; i++) {
+            readerSum += reader.get(i);
+          }
+          readerNanos = Math.min(readerNanos, System.nanoTime() - time);
+
+          assertEquals(plainSum, readerSum);
+        }
+        // generous bound; per-byte atomic pinning would be far slower than that
+        assertTrue(readerNanos <= plainNanos * 10 + 50_000_000L, "reader: " + readerNanos
+            + "ns; plain: " + plainNanos + "ns");
+      } finally {
+        reader.close();
+      }
+      reader.close();
+      assertThrows(IllegalStateException.class, () -> reader.get(0));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testReadAllBytesSegmented() throws Exception {
+    for (int size : new int[] {0, 1, SegmentedBytes.CHUNK_SIZE, 3 * SegmentedBytes.CHUNK_SIZE
+        + 17}) {
+      byte[] bytes = randomBytes(size);
+      try (SegmentedBytes sb = IOUtil.readAllBytesSegmented(new ByteArrayInputStream(bytes))) {
+        assertEquals(size, sb.size());
+        assertArrayEquals(bytes, sb.toByteArray());
+        assertArrayEquals(bytes, IOUtil.readAllBytes(sb.newInputStream()));
+
+        long total = 0;
+        for (ByteBuffer buf : sb.asByteBuffers()) {
+          total += buf.remaining();
+        }
+        assertEquals(size, total);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        assertEquals(size, sb.writeTo(Channels.newChannel(bos)));
+        assertArrayEquals(bytes, bos.toByteArray());
+      }
+    }
+
+    SegmentedBytes sb = IOUtil.readAllBytesSegmented(new ByteArrayInputStream(new byte[10]));
+    sb.close();
+    assertThrows(IllegalStateException.class, sb::newInputStream);
+  }
+
+  @Test
+  public void testSegmentedBytesUseAfterClose() throws Exception {
+    byte[] bytes = randomBytes(2 * SegmentedBytes.CHUNK_SIZE + 5);
+
+    SegmentedBytes sb = IOUtil.readAllBytesSegmented(new ByteArrayInputStream(bytes));
+    InputStream in = sb.newInputStream();
+    assertEquals(bytes[0] & 0xFF, in.read());
+    sb.close();
+    assertThrows(IOException.class, in::read);
+    assertThrows(IOException.class, () -> in.read(new byte[10]));
+    assertThrows(IOException.class, in::available);
+
+    sb = IOUtil.readAllBytesSegmented(new ByteArrayInputStream(bytes));
+    ByteBuffer[] views = sb.asByteBuffers();
+    sb.close();
+
+    // exposed chunks are not reused, so the views stay intact
+    try (SegmentedBytes other = IOUtil.readAllBytesSegmented(new ByteArrayInputStream(
+        new byte[bytes.length]))) {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      for (ByteBuffer buf : views) {
+        while (buf.hasRemaining()) {
+          bos.write(buf.get());
+        }
+      }
+      assertArrayEquals(bytes, bos.toByteArray());
+      assertEquals(bytes.length, other.size());
+    }
+  }
+
+  @Test
+  public void testPoolDepth() {
+    ByteArrayPool pool = new ByteArrayPool(1, 4);
+    byte[][] bufs = new byte[5][];
+    for (int i = 0; i < bufs.length; i++) {
+      bufs[i] = pool.acquire(ByteArrayPool.MIN_SIZE);
+    }
+    for (byte[] buf : bufs) {
+      pool.release(buf);
+    }
+    assertEquals(1, pool.getDiscardCount());
+    for (int i = 0; i < 4; i++) {
+      pool.acquire(ByteArrayPool.MIN_SIZE);
+    }
+    assertEquals(4, pool.getHitCount());
+  }
+
+  @Test
+  public void testDirectBufferPool() throws Exception {
+    DirectBufferPool pool = DirectBufferPool.newInstance(1, true, (t) -> {
+    });
+    DirectBufferPool.Lease lease = pool.allocate(5000);
+    ByteBuffer buf = lease.buffer();
+    assertTrue(buf.isDirect());
+    assertEquals(5000, buf.limit());
+    assertEquals(8192, buf.capacity());
+    assertEquals(1, pool.getMissCount());
+    lease.close();
+    lease.close();
+    assertThrows(IllegalStateException.class, lease::buffer);
+
+    try (DirectBufferPool.Lease lease2 = pool.allocate(8192)) {
+      assertSame(buf, lease2.buffer());
+      assertEquals(1, pool.getHitCount());
+      lease2.buffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+    try (DirectBufferPool.Lease lease2 = pool.allocate(8192)) {
+      assertSame(buf, lease2.buffer());
+      assertEquals(ByteOrder.BIG_ENDIAN, lease2.buffer().order());
+    }
+    try (DirectBufferPool.Lease lease3 = pool.allocate(2 * 1024 * 1024)) {
+      assertEquals(2 * 1024 * 1024, lease3.buffer().capacity());
+    }
+    assertEquals(0, pool.getLeakCount());
+  }
+
+  @Test
+  public void testTransferAllBytesWithDigests() throws Exception {
+    byte[] bytes = "123456789".getBytes(StandardCharsets.US_ASCII);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    IOUtil.TransferResult result = IOUtil.transferAllBytesWithDigests(new ByteArrayInputStream(
+        bytes), out, "CRC32C", "CRC32", "SHA-256");
+    assertEquals(9, result.getBytesTransferred());
+    assertArrayEquals(bytes, out.toByteArray());
+    assertArrayEquals(new byte[] {(byte) 0xE3, 0x06, (byte) 0x92, (byte) 0x83}, result.getDigest(
+        "CRC32C"));
+    assertArrayEquals(new byte[] {(byte) 0xCB, (byte) 0xF4, 0x39, 0x26}, result.getDigest(
+        "CRC32"));
+    assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(bytes), result.getDigest(
+        "SHA-256"));
+    assertNull(result.getDigest("MD5"));
+
+    PureJavaCRC32C crc = new PureJavaCRC32C();
+    crc.update(bytes, 0, bytes.length);
+    assertEquals(0xE3069283L, crc.getValue());
+
+    assertThrows(IllegalArgumentException.class, () -> IOUtil.transferAllBytesWithDigests(
+        new ByteArrayInputStream(bytes), out, "NoSuchAlgorithm"));
+  }
+
+  @Test
+  public void testReadAheadInputStream() throws Exception {
+    byte[] bytes = randomBytes(1024 * 1024 + 7);
+    try (ReadAheadInputStream in = ReadAheadInputStream.of(new ByteArrayInputStream(bytes), 4096,
+        3, null)) {
+      assertEquals(bytes[0] & 0xFF, in.read());
+      assertArrayEquals(Arrays.copyOfRange(bytes, 1, bytes.length), IOUtil.readAllBytes(in));
+      assertEquals(-1, in.read());
+    }
+
+    InputStream failing = new InputStream() {
+      private int count;
+
+      @Override
+      public int read() throws IOException {
+        if (++count > 10) {
+          throw new IOException("Expected");
+        }
+        return count;
+      }
+    };
+    try (ReadAheadInputStream in = ReadAheadInputStream.of(failing)) {
+      assertEquals("Expected", assertThrows(IOException.class, () -> IOUtil.readAllBytes(in))
+          .getMessage());
+    }
+
+    InputStream erroneous = new InputStream() {
+      @Override
+      public int read() throws IOException {
+        throw new AssertionError("Expected");
+      }
+    };
+    try (ReadAheadInputStream in = ReadAheadInputStream.of(erroneous)) {
+      assertEquals("Expected", assertThrows(AssertionError.class, in::read).getMessage());
+    }
+  }
+
+  @Test
+  public void testReadAheadInputStreamCloseDuringRead() throws Exception {
+    CountDownLatch reading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger closeCalls = new AtomicInteger();
+    AtomicBoolean closedWhileReading = new AtomicBoolean();
+    InputStream blocking = new InputStream() {
+      private volatile boolean inRead;
+
+      @Override
+      public int read() throws IOException {
+        inRead = true;
+        try {
+          reading.countDown();
+          release.await();
+          return 1;
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        } finally {
+          inRead = false;
+        }
+      }
+
+      @Override
+      public void close() throws IOException {
+        closeCalls.incrementAndGet();
+        if (inRead) {
+          closedWhileReading.set(true);
+        }
+      }
+    };
+
+    ReadAheadInputStream in = ReadAheadInputStream.of(blocking, 1, 1, null);
+    reading.await();
+
+    Thread[] closers = new Thread[2];
+    for (int i = 0; i < closers.length; i++) {
+      closers[i] = new Thread(() -> {
+        try {
+          in.close();
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      });
+      closers[i].start();
+    }
+    Thread.sleep(50);
+    assertEquals(0, closeCalls.get()); // the background reader is still in read
+
+    release.countDown();
+    for (Thread t : closers) {
+      t.join();
+    }
+    in.close();
+    assertEquals(1, closeCalls.get());
+    assertFalse(closedWhileReading.get());
+  }
+
+  @Test
+  public void testBroadcastAllBytes() throws Exception {
+    byte[] bytes = randomBytes(1024 * 1024 + 7);
+    ByteArrayOutputStream out1 = new ByteArrayOutputStream();
+    ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+    OutputStream slow = new ByteArrayOutputStream() {
+      @Override
+      public synchronized void write(byte[] b, int off, int len) {
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        super.write(b, off, len);
+      }
+    };
+
+    BroadcastStats stats = IOUtil.broadcastAllBytes(new ByteArrayInputStream(bytes), null, out1,
+        out2, slow);
+    assertEquals(bytes.length, stats.getBytesTransferred());
+    assertEquals(3, stats.getSinks().size());
+    for (BroadcastStats.Sink sink : stats.getSinks()) {
+      assertEquals(bytes.length, sink.getBytesWritten());
+    }
+    assertArrayEquals(bytes, out1.toByteArray());
+    assertArrayEquals(bytes, out2.toByteArray());
+    assertArrayEquals(bytes, ((ByteArrayOutputStream) slow).toByteArray());
+
+    OutputStream failing = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        throw new IOException("Expected");
+      }
+    };
+    ByteArrayOutputStream out3 = new ByteArrayOutputStream();
+    IOException e = assertThrows(IOException.class, () -> IOUtil.broadcastAllBytes(
+        new ByteArrayInputStream(bytes), null, failing, out3));
+    assertEquals("Expected", e.getCause().getMessage());
+    assertArrayEquals(bytes, out3.toByteArray());
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class LazyGroupTest {
+  @Test
+  public void testWarmUp() throws Exception {
+    LazyGroup group = new LazyGroup();
+    Lazy<String> a = group.enroll("a", Lazy.of(() -> "A"));
+    group.enroll("b", Lazy.of(() -> {
+      throw new IllegalStateException("Expected");
+    }));
+
+    ExecutorService es = Executors.newFixedThreadPool(2);
+    try {
+      LazyGroup.Report report = group.warmUp(es, 10, TimeUnit.SECONDS);
+      List<LazyGroup.Timing> timings = report.getTimings();
+      assertEquals(2, timings.size());
+      assertEquals("a", timings.get(0).getName());
+      assertTrue(timings.get(0).isFinished());
+      assertNull(timings.get(0).getFailure());
+      assertTrue(timings.get(1).isFinished());
+      assertEquals("Expected", timings.get(1).getFailure().getMessage());
+      assertFalse(report.isComplete());
+      assertEquals("A", a.get());
+      assertSame(a, group.enroll("c", a));
+    } finally {
+      es.shutdown();
+    }
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    LazyGroup group = new LazyGroup();
+    group.enroll("slow", Lazy.of(() -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      return "done";
+    }));
+    group.enroll("fast", Lazy.of(() -> "fast"));
+
+    ExecutorService es = Executors.newFixedThreadPool(2);
+    try {
+      LazyGroup.Report report = group.warmUp(es, 50, TimeUnit.MILLISECONDS);
+      assertFalse(report.getTimings().get(0).isFinished());
+      assertTrue(report.getTimings().get(1).isFinished());
+      assertEquals("slow", report.getTimingsSlowestFirst().get(0).getName());
+      assertFalse(report.isComplete());
+    } finally {
+      release.countDown();
+      es.shutdown();
+    }
+  }
+
+  @Test
+  public void testRejectedExecution() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    LazyGroup group = new LazyGroup();
+    group.enroll("first", Lazy.of(calls::incrementAndGet));
+    group.enroll("rejected", Lazy.of(calls::incrementAndGet));
+    group.enroll("third", Lazy.of(calls::incrementAndGet));
+
+    AtomicInteger submissions = new AtomicInteger();
+    LazyGroup.Report report = group.warmUp((r) -> {
+      if (submissions.incrementAndGet() == 2) {
+        throw new RejectedExecutionException();
+      }
+      r.run();
+    }, 10, TimeUnit.SECONDS);
+
+    List<LazyGroup.Timing> timings = report.getTimings();
+    assertNull(timings.get(0).getFailure());
+    assertTrue(timings.get(1).getFailure() instanceof RejectedExecutionException);
+    assertNull(timings.get(2).getFailure());
+    assertEquals(2, calls.get());
+    assertFalse(report.isComplete());
+  }
+}
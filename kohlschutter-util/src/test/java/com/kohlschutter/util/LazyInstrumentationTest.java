@@ -0,0 +1,112 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class LazyInstrumentationTest {
+  @Test
+  public void testDisabledByDefault() throws Exception {
+    assertFalse(LazyInstrumentation.isEnabled());
+    Lazy<String> lazy = Lazy.ofNamed("testDisabledByDefault", () -> "value");
+    assertFalse(lazy instanceof InstrumentedLazy);
+    assertEquals("value", lazy.get());
+    assertNull(LazyInstrumentation.getMetrics("testDisabledByDefault"));
+  }
+
+  @Test
+  public void testInitializationMetrics() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    InstrumentedLazy<Integer> lazy = new InstrumentedLazy<>("testInitializationMetrics", () -> {
+      if (calls.incrementAndGet() == 1) {
+        throw new IllegalStateException("Expected");
+      }
+      return calls.get();
+    }, LazyFailurePolicy.reset());
+    assertThrows(IllegalStateException.class, lazy::get);
+    assertEquals(2, lazy.get());
+    assertEquals(2, lazy.get(1, TimeUnit.SECONDS));
+    assertEquals(2, lazy.getInterruptibly());
+
+    LazyMetricsMXBean metrics = LazyInstrumentation.getMetrics("testInitializationMetrics");
+    assertEquals("testInitializationMetrics", metrics.getName());
+    assertEquals(2, metrics.getInitializationCount());
+    assertEquals(1, metrics.getFailureCount());
+    assertTrue(metrics.getTotalInitializationNanos() > 0);
+    assertEquals(0, metrics.getWaiterCount());
+    assertTrue(LazyInstrumentation.getAllMetrics().contains(metrics));
+    assertTrue(lazy.toString().startsWith("testInitializationMetrics:"));
+  }
+
+  @Test
+  public void testWaitMetrics() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    InstrumentedLazy<String> lazy = new InstrumentedLazy<>("testWaitMetrics", () -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      return "done";
+    }, LazyFailurePolicy.reset());
+
+    Thread computing = new Thread(lazy::get);
+    computing.start();
+    started.await();
+    Thread waiting = new Thread(lazy::get);
+    waiting.start();
+    while (waiting.getState() != Thread.State.WAITING) {
+      Thread.sleep(1);
+    }
+    release.countDown();
+    computing.join();
+    waiting.join();
+
+    LazyMetricsMXBean metrics = LazyInstrumentation.getMetrics("testWaitMetrics");
+    assertEquals(1, metrics.getInitializationCount());
+    assertEquals(1, metrics.getWaiterCount());
+    assertTrue(metrics.getTotalWaitNanos() > 0);
+  }
+
+  @Test
+  public void testMetricsPerName() throws Exception {
+    LazyMetrics metrics = LazyInstrumentation.metricsFor("testMetricsPerName");
+    assertSame(metrics, LazyInstrumentation.metricsFor("testMetricsPerName"));
+    metrics.recordInitialization(100, false);
+    metrics.recordInitialization(50, true);
+    metrics.recordWait(10);
+    assertEquals(2, metrics.getInitializationCount());
+    assertEquals(1, metrics.getFailureCount());
+    assertEquals(150, metrics.getTotalInitializationNanos());
+    assertEquals(1, metrics.getWaiterCount());
+    assertEquals(10, metrics.getTotalWaitNanos());
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+public class LazyMapTest {
+
+  @Test
+  public void testSingleFlight() throws Exception {
+    int numThreads = 16;
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch go = new CountDownLatch(1);
+    LazyMap<String, String> map = LazyMap.of((k) -> {
+      calls.incrementAndGet();
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      return k.toUpperCase(Locale.ENGLISH);
+    });
+
+    ExecutorService es = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<String>> futures = new ArrayList<>();
+      for (int i = 0; i < numThreads; i++) {
+        String key = (i % 2 == 0) ? "even" : "odd";
+        futures.add(es.submit(() -> {
+          go.await();
+          return map.get(key);
+        }));
+      }
+      go.countDown();
+      for (int i = 0; i < numThreads; i++) {
+        assertEquals((i % 2 == 0) ? "EVEN" : "ODD", futures.get(i).get());
+      }
+    } finally {
+      es.shutdown();
+    }
+
+    assertEquals(2, calls.get());
+    LazyMap.Stats stats = map.getStats();
+    assertEquals(2, stats.getMissCount());
+    assertEquals(numThreads - 2, stats.getHitCount());
+    assertEquals(2, stats.getLoadSuccessCount());
+  }
+
+  @Test
+  public void testRecursiveLoad() throws Exception {
+    AtomicReference<LazyMap<Integer, Long>> ref = new AtomicReference<>();
+    LazyMap<Integer, Long> factorial = LazyMap.of((n) -> n <= 1 ? 1L : n * ref.get().get(n - 1));
+    ref.set(factorial);
+    assertEquals(3628800L, (long) factorial.get(10));
+    assertEquals(10, factorial.size());
+
+    AtomicReference<LazyMap<Integer, Integer>> ref2 = new AtomicReference<>();
+    LazyMap<Integer, Integer> self = LazyMap.of((n) -> ref2.get().get(n));
+    ref2.set(self);
+    assertThrows(IllegalStateException.class, () -> self.get(1));
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    LazyMap<Integer, Integer> map = LazyMap.of((k) -> {
+      calls.incrementAndGet();
+      return k * 2;
+    }, 2);
+    assertEquals(2, (int) map.get(1));
+    assertEquals(4, (int) map.get(2));
+    assertEquals(6, (int) map.get(3));
+    assertEquals(2, map.size());
+    assertEquals(1, map.getStats().getEvictionCount());
+
+    assertEquals(6, (int) map.get(3));
+    assertEquals(3, calls.get());
+    assertEquals(2, (int) map.get(1));
+    assertEquals(4, calls.get());
+  }
+
+  @Test
+  public void testInvalidateBounded() throws Exception {
+    LazyMap<Integer, Integer> map = LazyMap.of((k) -> k * 2, 10);
+    for (int i = 0; i < 100_000; i++) {
+      assertEquals(i % 5 * 2, (int) map.get(i % 5));
+      map.invalidate(i % 5);
+    }
+    assertEquals(0, map.size());
+    assertEquals(0, map.trackedSize());
+    assertEquals(0, map.getStats().getEvictionCount());
+
+    for (int i = 0; i < 20; i++) {
+      map.get(i);
+    }
+    assertEquals(10, map.size());
+    assertEquals(10, map.trackedSize());
+    map.invalidate(15);
+    assertEquals(9, map.trackedSize());
+    map.invalidateAll();
+    assertEquals(0, map.trackedSize());
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    LazyMap<String, String> map = LazyMap.of((k) -> {
+      if (calls.incrementAndGet() == 1) {
+        throw new IllegalArgumentException();
+      }
+      return k;
+    });
+    assertThrows(IllegalArgumentException.class, () -> map.get("key"));
+    assertEquals("key", map.get("key"));
+    assertEquals(1, map.getStats().getLoadFailureCount());
+    assertEquals(1, map.getStats().getLoadSuccessCount());
+  }
+}
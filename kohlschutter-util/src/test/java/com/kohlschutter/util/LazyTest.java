@@ -0,0 +1,407 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+public class LazyTest {
+
+  @Test
+  public void testSupplier() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    Lazy<String> lazy = Lazy.of(() -> "Hello" + calls.incrementAndGet());
+    assertEquals(0, calls.get());
+    assertEquals("Hello1", lazy.get());
+    assertEquals("Hello1", lazy.get());
+    assertFalse(lazy.complete("World"));
+    assertEquals("Hello1", lazy.get());
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void testCompleteBeforeGet() throws Exception {
+    Lazy<String> lazy = Lazy.of(() -> {
+      throw new IllegalStateException("Should not be called");
+    });
+    assertTrue(lazy.complete("World"));
+    assertEquals("World", lazy.get());
+  }
+
+  @Test
+  public void testCompleteFromWithinSupplier() throws Exception {
+    AtomicReference<Lazy<String>> ref = new AtomicReference<>();
+    Lazy<String> lazy = Lazy.of(() -> {
+      assertTrue(ref.get().complete("Inner"));
+      return "Outer";
+    });
+    ref.set(lazy);
+    assertEquals("Inner", lazy.get());
+    assertEquals("Inner", lazy.get());
+  }
+
+  @Test
+  public void testNoSupplier() throws Exception {
+    Lazy<String> lazy = Lazy.of();
+    assertNull(lazy.get());
+    assertFalse(lazy.complete("Late"));
+    assertNull(lazy.get());
+
+    Lazy<String> lazy2 = Lazy.of();
+    lazy2.accept("Early");
+    assertEquals("Early", lazy2.get());
+  }
+
+  @Test
+  public void testSupplied() throws Exception {
+    Lazy<String> lazy = Lazy.ofSupplied("Value");
+    assertFalse(lazy.complete("Other"));
+    assertEquals("Value", lazy.get());
+  }
+
+  @Test
+  public void testNullValue() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    Lazy<String> lazy = Lazy.of(() -> {
+      calls.incrementAndGet();
+      return null;
+    });
+    assertNull(lazy.get());
+    assertNull(lazy.get());
+    assertFalse(lazy.complete("Other"));
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void testSupplierThrows() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    Lazy<String> lazy = Lazy.of(() -> {
+      if (calls.incrementAndGet() == 1) {
+        throw new IllegalArgumentException("First call fails");
+      }
+      return "Second";
+    });
+    assertThrows(IllegalArgumentException.class, lazy::get);
+    assertEquals("Second", lazy.get());
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  public void testRecursiveInitialization() throws Exception {
+    AtomicReference<Lazy<String>> ref = new AtomicReference<>();
+    Lazy<String> lazy = Lazy.of(() -> ref.get().get());
+    ref.set(lazy);
+    assertThrows(IllegalStateException.class, lazy::get);
+  }
+
+  @Test
+  public void testConcurrentGet() throws Exception {
+    int numThreads = 16;
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    Lazy<Integer> lazy = Lazy.of(() -> {
+      started.countDown();
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      return calls.incrementAndGet();
+    });
+
+    ExecutorService es = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < numThreads; i++) {
+        futures.add(es.submit(() -> lazy.get()));
+      }
+      started.await();
+      for (Future<Integer> f : futures) {
+        assertEquals(1, (int) f.get());
+      }
+    } finally {
+      es.shutdown();
+    }
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void testPrimitives() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    LazyInt lazyInt = Lazy.ofInt(calls::incrementAndGet);
+    assertEquals(1, lazyInt.getAsInt());
+    assertEquals(1, lazyInt.getAsInt());
+    assertFalse(lazyInt.complete(42));
+    assertEquals(1, lazyInt.getAsInt());
+    assertEquals(1, calls.get());
+
+    LazyLong lazyLong = Lazy.ofLong(() -> {
+      throw new IllegalStateException("Should not be called");
+    });
+    assertTrue(lazyLong.complete(Long.MIN_VALUE));
+    assertEquals(Long.MIN_VALUE, lazyLong.getAsLong());
+
+    LazyDouble lazyDouble = Lazy.ofDouble(() -> -0.5);
+    assertEquals(-0.5, lazyDouble.getAsDouble());
+    assertFalse(lazyDouble.complete(1.0));
+
+    AtomicReference<LazyBoolean> ref = new AtomicReference<>();
+    LazyBoolean lazyBoolean = Lazy.ofBoolean(() -> {
+      assertTrue(ref.get().complete(true));
+      return false;
+    });
+    ref.set(lazyBoolean);
+    assertTrue(lazyBoolean.getAsBoolean());
+  }
+
+  private static LazyInt newLazyIntCapturing(AtomicReference<WeakReference<int[]>> ref) {
+    int[] captured = {42};
+    ref.set(new WeakReference<>(captured));
+    return Lazy.ofInt(() -> captured[0]);
+  }
+
+  @Test
+  public void testPrimitiveSupplierReleased() throws Exception {
+    AtomicReference<WeakReference<int[]>> holder = new AtomicReference<>();
+    LazyInt lazyInt = newLazyIntCapturing(holder);
+    WeakReference<int[]> ref = holder.get();
+    assertEquals(42, lazyInt.getAsInt());
+
+    for (int i = 0; i < 100 && ref.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assumeTrue(ref.get() == null, "Weak reference was not cleared");
+    assertEquals(42, lazyInt.getAsInt());
+  }
+
+  @Test
+  public void testFailurePolicyCache() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    Lazy<String> lazy = Lazy.of(() -> {
+      calls.incrementAndGet();
+      throw new IllegalArgumentException("Cached");
+    }, LazyFailurePolicy.cache());
+    IllegalArgumentException e1 = assertThrows(IllegalArgumentException.class, lazy::get);
+    IllegalArgumentException e2 = assertThrows(IllegalArgumentException.class, lazy::get);
+    assertSame(e1, e2);
+    assertFalse(lazy.complete("Too late"));
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void testFailurePolicyRetry() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    Lazy<String> lazy = Lazy.of(() -> {
+      if (calls.incrementAndGet() < 3) {
+        throw new IllegalArgumentException("Attempt " + calls.get());
+      }
+      return "Third";
+    }, LazyFailurePolicy.retry(3, 1, TimeUnit.MILLISECONDS));
+    assertEquals("Third", lazy.get());
+    assertEquals(3, calls.get());
+
+    AtomicInteger calls2 = new AtomicInteger();
+    Lazy<String> lazy2 = Lazy.of(() -> {
+      throw new IllegalArgumentException("Attempt " + calls2.incrementAndGet());
+    }, LazyFailurePolicy.retry(2, 1, TimeUnit.MILLISECONDS));
+    assertEquals("Attempt 2", assertThrows(IllegalArgumentException.class, lazy2::get)
+        .getMessage());
+    assertEquals("Attempt 4", assertThrows(IllegalArgumentException.class, lazy2::get)
+        .getMessage());
+  }
+
+  @Test
+  public void testComposition() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    Lazy<Integer> source = Lazy.of(calls::incrementAndGet);
+    Lazy<String> mapped = source.map((v) -> "v" + v);
+    Lazy<String> flatMapped = mapped.flatMap((v) -> Lazy.ofSupplied(v + "!"));
+    Lazy<String> zipped = flatMapped.zip(Lazy.ofSupplied(42), (a, b) -> a + b);
+    assertEquals(0, calls.get());
+
+    assertEquals("v1!42", zipped.get());
+    assertEquals("v1!42", zipped.get());
+    assertEquals("v1", mapped.get());
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void testCompositionCollapsesCompleted() throws Exception {
+    AtomicInteger mapperCalls = new AtomicInteger();
+    Lazy<Integer> source = Lazy.of(() -> 1);
+
+    Lazy<Integer> pending = source.map((v) -> v + mapperCalls.incrementAndGet());
+    assertFalse(pending instanceof Lazy.WithSupplied);
+    assertEquals(0, mapperCalls.get());
+
+    assertEquals(1, source.get());
+    Lazy<Integer> mapped = source.map((v) -> v + mapperCalls.incrementAndGet());
+    assertTrue(mapped instanceof Lazy.WithSupplied);
+    assertEquals(1, mapperCalls.get()); // applied immediately
+    assertEquals(2, mapped.get());
+
+    // a chain on a completed source does not add layers
+    Lazy<String> chained = mapped.map((v) -> "v" + v).map((v) -> v + "!");
+    assertTrue(chained instanceof Lazy.WithSupplied);
+    assertEquals("v2!", chained.get());
+
+    Lazy<String> flatMapped = source.flatMap((v) -> Lazy.ofSupplied("f" + v));
+    assertTrue(flatMapped instanceof Lazy.WithSupplied);
+    assertEquals("f1", flatMapped.get());
+
+    Lazy<String> flatMappedPending = source.flatMap((v) -> Lazy.of(() -> "p" + v));
+    assertFalse(flatMappedPending instanceof Lazy.WithSupplied);
+    assertEquals("p1", flatMappedPending.get());
+
+    Lazy<String> zipped = source.zip(Lazy.ofSupplied("x"), (a, b) -> a + b);
+    assertTrue(zipped instanceof Lazy.WithSupplied);
+    assertEquals("1x", zipped.get());
+
+    Lazy<String> zippedPending = source.zip(Lazy.of(() -> "y"), (a, b) -> a + b);
+    assertFalse(zippedPending instanceof Lazy.WithSupplied);
+    assertEquals("1y", zippedPending.get());
+
+    // once the derived instance itself is completed, deriving from it collapses as well
+    assertEquals(3, pending.get());
+    Lazy<String> derived = pending.map((v) -> v).zip(zippedPending, (a, b) -> a + b);
+    assertTrue(derived instanceof Lazy.WithSupplied);
+    assertEquals("31y", derived.get());
+  }
+
+  @Test
+  public void testTimedAndInterruptibleGet() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Lazy<String> lazy = Lazy.of(() -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      return "Done";
+    });
+
+    Thread computing = new Thread(lazy::get);
+    computing.start();
+    started.await();
+
+    assertThrows(TimeoutException.class, () -> lazy.get(10, TimeUnit.MILLISECONDS));
+    assertThrows(TimeoutException.class, () -> lazy.get(0, TimeUnit.MILLISECONDS));
+
+    Thread.currentThread().interrupt();
+    assertThrows(InterruptedException.class, lazy::getInterruptibly);
+    assertFalse(Thread.interrupted());
+
+    release.countDown();
+    assertEquals("Done", lazy.get(10, TimeUnit.SECONDS));
+    assertEquals("Done", lazy.getInterruptibly());
+    computing.join();
+  }
+
+  @Test
+  public void testTimedOutWaitersAreUnlinked() throws Exception {
+    AtomicReference<LazyComputation> ref = new AtomicReference<>();
+    Thread owner = new Thread(() -> ref.set(new LazyComputation()));
+    owner.start();
+    owner.join();
+    LazyComputation computation = ref.get();
+
+    for (int i = 0; i < 100; i++) {
+      assertFalse(computation.await(TimeUnit.MICROSECONDS.toNanos(100), false));
+    }
+    assertEquals(0, computation.countWaiters());
+
+    Thread.currentThread().interrupt();
+    assertThrows(InterruptedException.class, () -> computation.await(-1, true));
+    assertEquals(0, computation.countWaiters());
+
+    computation.finish();
+    assertTrue(computation.await(0, false));
+  }
+
+  @Test
+  public void testDefaultTimedGet() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+    Lazy<String> lazy = new Lazy<String>() {
+      @Override
+      public String get() {
+        calls.incrementAndGet();
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+        return "Hello";
+      }
+
+      @Override
+      public boolean complete(String value) {
+        return false;
+      }
+    };
+
+    AtomicReference<Object> result = new AtomicReference<>();
+    Thread computing = new Thread(() -> {
+      try {
+        result.set(lazy.get(1, TimeUnit.MINUTES));
+      } catch (Exception e) { // NOPMD
+        result.set(e);
+      }
+    });
+    computing.start();
+    started.await();
+
+    assertThrows(TimeoutException.class, () -> lazy.get(10, TimeUnit.MILLISECONDS));
+    assertThrows(TimeoutException.class, () -> lazy.get(0, TimeUnit.MILLISECONDS));
+    Thread.currentThread().interrupt();
+    assertThrows(InterruptedException.class, () -> lazy.get(1, TimeUnit.SECONDS));
+    assertEquals(1, calls.get());
+
+    release.countDown();
+    computing.join();
+    assertEquals("Hello", result.get());
+    assertEquals("Hello", lazy.get(1, TimeUnit.SECONDS));
+
+    assertEquals("Hello", Lazy.ofSupplied("Hello").get(1, TimeUnit.SECONDS));
+    assertEquals("Hello", Lazy.of(() -> "Hello").get(0, TimeUnit.SECONDS));
+  }
+}
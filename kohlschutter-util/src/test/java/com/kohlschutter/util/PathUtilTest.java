@@ -0,0 +1,254 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class PathUtilTest {
+  private static Path createTree(Path root, int depth, int filesPerDir) throws Exception {
+    Files.createDirectories(root);
+    for (int i = 0; i < filesPerDir; i++) {
+      Files.write(root.resolve("file" + i), ("content" + i).getBytes(StandardCharsets.UTF_8));
+    }
+    if (depth > 0) {
+      for (int i = 0; i < 3; i++) {
+        createTree(root.resolve("dir" + i), depth - 1, filesPerDir);
+      }
+    }
+    return root;
+  }
+
+  @Test
+  public void testCopyAndDeleteRecursively() throws Exception {
+    Path base = Files.createTempDirectory("pathutiltest");
+    try {
+      Path source = createTree(base.resolve("source"), 2, 70);
+      long expected = (1 + 3 + 9) * (70 + 1);
+
+      AtomicInteger progress = new AtomicInteger();
+      assertEquals(expected, PathUtil.copyRecursively(source, base.resolve("parallel"),
+          ForkJoinPool.commonPool(), (p) -> progress.incrementAndGet()));
+      assertEquals(expected, progress.get());
+      assertEquals(expected, PathUtil.copyRecursively(source, base.resolve("serial"), null,
+          null));
+      assertArrayEquals(Files.readAllBytes(source.resolve("dir1/dir2/file69")), Files
+          .readAllBytes(base.resolve("serial/dir1/dir2/file69")));
+
+      assertEquals(expected, PathUtil.deleteRecursively(base.resolve("parallel")));
+      assertFalse(Files.exists(base.resolve("parallel")));
+      assertEquals(expected, PathUtil.deleteRecursively(base.resolve("serial"), null, null));
+      assertEquals(0, PathUtil.deleteRecursively(base.resolve("serial")));
+      assertTrue(Files.exists(source));
+    } finally {
+      PathUtil.deleteRecursively(base);
+    }
+  }
+
+  @Test
+  public void testCopyIntoItself() throws Exception {
+    Path base = Files.createTempDirectory("pathutiltest");
+    try {
+      Path source = createTree(base.resolve("source"), 1, 2);
+      assertThrows(IOException.class, () -> PathUtil.copyRecursively(source, source.resolve(
+          "sub")));
+      assertThrows(IOException.class, () -> PathUtil.copyRecursively(source, source));
+      assertThrows(IOException.class, () -> PathUtil.copyRecursively(source, base.resolve(
+          "source/dir0/../new/deeper")));
+      assertFalse(Files.exists(source.resolve("sub")));
+      assertFalse(Files.exists(source.resolve("new")));
+
+      Files.createDirectory(base.resolve("target"));
+      assertEquals((1 + 3) * (2 + 1), PathUtil.copyRecursively(source, base.resolve("target")));
+      assertTrue(Files.exists(base.resolve("target/dir0/file1")));
+    } finally {
+      PathUtil.deleteRecursively(base);
+    }
+  }
+
+  @Test
+  public void testCopyRecursivelyReadOnlyDirectory() throws Exception {
+    Path base = Files.createTempDirectory("pathutiltest");
+    Path source = createTree(base.resolve("source"), 1, 2);
+    try {
+      assumeTrue(Files.getFileAttributeView(source, PosixFileAttributeView.class) != null,
+          "POSIX permissions not supported");
+      Set<PosixFilePermission> readOnly = PosixFilePermissions.fromString("r-xr-xr-x");
+      FileTime mtime = FileTime.fromMillis(1_000_000_000_000L);
+      for (Path dir : new Path[] {source.resolve("dir1"), source}) {
+        Files.setPosixFilePermissions(dir, readOnly);
+        Files.setLastModifiedTime(dir, mtime);
+      }
+
+      for (ForkJoinPool pool : new ForkJoinPool[] {ForkJoinPool.commonPool(), null}) {
+        Path target = base.resolve(pool == null ? "serial" : "parallel");
+        assertEquals((1 + 3) * (2 + 1), PathUtil.copyRecursively(source, target, pool, null,
+            StandardCopyOption.COPY_ATTRIBUTES));
+        assertTrue(Files.exists(target.resolve("dir1/file1")));
+        for (Path dir : new Path[] {target.resolve("dir1"), target}) {
+          assertEquals(readOnly, Files.getPosixFilePermissions(dir));
+          assertEquals(mtime, Files.getLastModifiedTime(dir));
+        }
+        assertEquals(Files.getPosixFilePermissions(source.resolve("dir0")), Files
+            .getPosixFilePermissions(target.resolve("dir0")));
+      }
+    } finally {
+      makeWritable(base);
+      PathUtil.deleteRecursively(base);
+    }
+  }
+
+  private static void makeWritable(Path root) throws IOException {
+    if (Files.isDirectory(root, LinkOption.NOFOLLOW_LINKS)) {
+      Files.setPosixFilePermissions(root, PosixFilePermissions.fromString("rwx------"));
+      try (DirectoryStream<Path> ds = Files.newDirectoryStream(root)) {
+        for (Path p : ds) {
+          makeWritable(p);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testAtomicFileWriter() throws Exception {
+    Path base = Files.createTempDirectory("pathutiltest");
+    try (AtomicFileWriter writer = AtomicFileWriter.newInstance()) {
+      Files.write(base.resolve("file0"), "old".getBytes(StandardCharsets.UTF_8));
+
+      List<CompletableFuture<Path>> futures = new ArrayList<>();
+      for (int i = 0; i < 50; i++) {
+        futures.add(writer.write(base.resolve("file" + i), ("new" + i).getBytes(
+            StandardCharsets.UTF_8)));
+      }
+      for (int i = 0; i < 50; i++) {
+        assertEquals(base.resolve("file" + i), futures.get(i).get());
+        assertEquals("new" + i, new String(Files.readAllBytes(base.resolve("file" + i)),
+            StandardCharsets.UTF_8));
+      }
+      writer.writeAndWait(base.resolve("file50"), new byte[0]);
+      try (DirectoryStream<Path> ds = Files.newDirectoryStream(base)) {
+        int count = 0;
+        for (Path p : ds) {
+          assertFalse(PathUtil.getFilename(p).contains(".tmp"));
+          count++;
+        }
+        assertEquals(51, count);
+      }
+
+      AtomicFileWriter.Stats stats = writer.getStats();
+      assertEquals(51, stats.getCommittedCount());
+      assertEquals(0, stats.getFailedCount());
+      assertTrue(stats.getBatchCount() >= 1 && stats.getBatchCount() <= 51);
+      assertTrue(stats.getDirectorySyncCount() <= stats.getBatchCount());
+
+      assertThrows(IOException.class, () -> writer.writeAndWait(base.resolve("missing/file"),
+          new byte[1]));
+    } finally {
+      PathUtil.deleteRecursively(base);
+    }
+  }
+
+  @Test
+  public void testPartialRealpathCached() throws Exception {
+    Path base = Files.createTempDirectory("pathutiltest");
+    try (RealpathCache ttlCache = RealpathCache.newInstance(100, 1, TimeUnit.HOURS);
+        RealpathCache watchingCache = RealpathCache.newWatchingInstance(100)) {
+      Files.createDirectories(base.resolve("a/b"));
+      Path[] paths = {
+          base.resolve("a/b/file"), base.resolve("a/b"), base.resolve("a/../a/b/./file"),
+          base.resolve("a/missing/x/y"), base.resolve("missing"), base.getFileName()};
+      for (RealpathCache cache : new RealpathCache[] {ttlCache, watchingCache}) {
+        for (int i = 0; i < 2; i++) {
+          for (Path p : paths) {
+            assertEquals(PathUtil.partialRealpath(p), PathUtil.partialRealpath(p, cache));
+          }
+        }
+      }
+      assertTrue(ttlCache.getHitCount() >= paths.length); // prefixes are shared
+      assertTrue(watchingCache.getHitCount() > 0);
+
+      Path created = base.resolve("a/missing");
+      assertEquals(created, PathUtil.partialRealpath(created, watchingCache));
+      Files.createDirectory(created);
+      Path expected = created.toRealPath();
+      long deadline = System.currentTimeMillis() + 30_000;
+      while (!expected.equals(PathUtil.partialRealpath(created, watchingCache))
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(expected, PathUtil.partialRealpath(created, watchingCache));
+    } finally {
+      PathUtil.deleteRecursively(base);
+    }
+  }
+
+  @Test
+  public void testPartialRealpathCachedSymlinkRetarget() throws Exception {
+    Path base = Files.createTempDirectory("pathutiltest").toRealPath();
+    try (RealpathCache cache = RealpathCache.newWatchingInstance(100)) {
+      Path t1 = Files.createDirectory(base.resolve("t1"));
+      Path t2 = Files.createDirectory(base.resolve("t2"));
+      Path link = base.resolve("link");
+      try {
+        Files.createSymbolicLink(link, t1);
+      } catch (IOException | UnsupportedOperationException e) {
+        assumeTrue(false, "Symbolic links not supported: " + e);
+      }
+
+      Path p = link.resolve("x");
+      assertEquals(t1.resolve("x"), PathUtil.partialRealpath(p, cache));
+      assertEquals(t1.resolve("x"), PathUtil.partialRealpath(p, cache));
+
+      Files.delete(link);
+      Files.createSymbolicLink(link, t2);
+      long deadline = System.currentTimeMillis() + 30_000;
+      while (!t2.resolve("x").equals(PathUtil.partialRealpath(p, cache)) && System
+          .currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(t2.resolve("x"), PathUtil.partialRealpath(p, cache));
+    } finally {
+      PathUtil.deleteRecursively(base);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+public class ReferenceLazyTest {
+  @Test
+  public void testSoft() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    ReferenceLazy<String> lazy = Lazy.ofSoft(() -> "v" + calls.incrementAndGet());
+    assertEquals("v1", lazy.get());
+    assertEquals("v1", lazy.get());
+    assertEquals(1, lazy.getComputationCount());
+    assertEquals(0, lazy.getRecomputationCount());
+    assertFalse(lazy.complete("other"));
+  }
+
+  @Test
+  public void testNullValue() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    ReferenceLazy<String> lazy = Lazy.ofWeak(() -> {
+      calls.incrementAndGet();
+      return null;
+    });
+    assertNull(lazy.get());
+    System.gc();
+    assertNull(lazy.get());
+    assertEquals(1, calls.get()); // null is never reclaimed
+  }
+
+  @Test
+  public void testWeakReclaimed() throws Exception {
+    ReferenceLazy<Object> lazy = Lazy.ofWeak(Object::new);
+    WeakReference<Object> first = new WeakReference<>(lazy.get());
+    assertSame(first.get(), lazy.get());
+
+    for (int i = 0; i < 100 && first.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assumeTrue(first.get() == null, "Weak reference was not cleared");
+
+    Object second = lazy.get();
+    assertEquals(2, lazy.getComputationCount());
+    assertEquals(1, lazy.getRecomputationCount());
+    assertSame(second, lazy.get());
+  }
+
+  @Test
+  public void testCompleteFromWithinSupplier() throws Exception {
+    AtomicReference<ReferenceLazy<String>> ref = new AtomicReference<>();
+    ref.set(Lazy.ofSoft(() -> {
+      assertTrue(ref.get().complete("completed"));
+      assertFalse(ref.get().complete("again"));
+      return "supplied";
+    }));
+    assertEquals("completed", ref.get().get());
+    assertEquals("completed", ref.get().get());
+  }
+
+  @Test
+  public void testRecursiveInitialization() throws Exception {
+    AtomicReference<ReferenceLazy<String>> ref = new AtomicReference<>();
+    ref.set(Lazy.ofSoft(() -> ref.get().get()));
+    assertEquals("Recursive initialization", assertThrows(IllegalStateException.class, ref
+        .get()::get).getMessage());
+  }
+
+  @Test
+  public void testTimedGet() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ReferenceLazy<String> lazy = Lazy.ofSoft(() -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      return "Done";
+    });
+
+    Thread computing = new Thread(lazy::get);
+    computing.start();
+    started.await();
+
+    assertThrows(TimeoutException.class, () -> lazy.get(10, TimeUnit.MILLISECONDS));
+    Thread.currentThread().interrupt();
+    assertThrows(InterruptedException.class, lazy::getInterruptibly);
+    assertFalse(Thread.interrupted());
+
+    release.countDown();
+    assertEquals("Done", lazy.get(10, TimeUnit.SECONDS));
+    computing.join();
+    assertEquals(1, lazy.getComputationCount());
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+public class RefreshingLazyTest {
+  private static final Executor DIRECT = Runnable::run;
+
+  @Test
+  public void testTtlExpiryAndRefresh() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    RefreshingLazy<Integer> lazy = RefreshingLazy.of(calls::incrementAndGet, 200, 60_000,
+        TimeUnit.MILLISECONDS, DIRECT);
+    assertEquals(1, lazy.get());
+    assertEquals(1, lazy.get());
+    assertEquals(1, calls.get());
+
+    Thread.sleep(250);
+    assertEquals(1, lazy.get()); // stale value, refresh triggered
+    assertEquals(2, calls.get());
+    assertEquals(2, lazy.get());
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  public void testMaxStaleness() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    Executor never = (r) -> {
+      // refreshes never run
+    };
+    RefreshingLazy<Integer> lazy = RefreshingLazy.of(calls::incrementAndGet, 10, 20,
+        TimeUnit.MILLISECONDS, never);
+    assertEquals(1, lazy.get());
+    Thread.sleep(30);
+    assertEquals(2, lazy.get()); // too stale, computed in the calling thread
+  }
+
+  @Test
+  public void testRefreshFailure() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    RefreshingLazy<Integer> lazy = RefreshingLazy.of(() -> {
+      int c = calls.incrementAndGet();
+      if (c == 2) {
+        throw new IllegalStateException("Expected");
+      }
+      return c;
+    }, 200, 60_000, TimeUnit.MILLISECONDS, DIRECT);
+    assertEquals(1, lazy.get());
+    Thread.sleep(250);
+    assertEquals(1, lazy.get()); // refresh fails, stale value is kept
+    assertEquals(2, calls.get());
+    assertEquals(1, lazy.get()); // refresh attempted again
+    assertEquals(3, calls.get());
+    assertEquals(3, lazy.get());
+
+    RefreshingLazy<Integer> failing = RefreshingLazy.of(() -> {
+      throw new IllegalStateException("Expected");
+    }, 10, 10, TimeUnit.MILLISECONDS, DIRECT);
+    assertEquals("Expected", assertThrows(IllegalStateException.class, failing::get)
+        .getMessage());
+  }
+
+  @Test
+  public void testComplete() throws Exception {
+    RefreshingLazy<String> lazy = RefreshingLazy.of(() -> "supplied", 200, 60_000,
+        TimeUnit.MILLISECONDS, DIRECT);
+    assertTrue(lazy.complete("completed"));
+    assertFalse(lazy.complete("again"));
+    assertEquals("completed", lazy.get());
+    Thread.sleep(250);
+    assertTrue(lazy.complete("after TTL"));
+    assertEquals("after TTL", lazy.get());
+  }
+
+  @Test
+  public void testRecursiveInitialization() throws Exception {
+    AtomicReference<RefreshingLazy<String>> ref = new AtomicReference<>();
+    ref.set(RefreshingLazy.of(() -> ref.get().get(), 10, 10, TimeUnit.MILLISECONDS, DIRECT));
+    assertEquals("Recursive initialization", assertThrows(IllegalStateException.class, ref
+        .get()::get).getMessage());
+  }
+
+  @Test
+  public void testTimedGet() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    RefreshingLazy<String> lazy = RefreshingLazy.of(() -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      return "Done";
+    }, 60, 60, TimeUnit.SECONDS, DIRECT);
+
+    Thread computing = new Thread(lazy::get);
+    computing.start();
+    started.await();
+
+    assertThrows(TimeoutException.class, () -> lazy.get(10, TimeUnit.MILLISECONDS));
+    Thread.currentThread().interrupt();
+    assertThrows(InterruptedException.class, lazy::getInterruptibly);
+    assertFalse(Thread.interrupted());
+
+    release.countDown();
+    assertEquals("Done", lazy.get(10, TimeUnit.SECONDS));
+    computing.join();
+  }
+}
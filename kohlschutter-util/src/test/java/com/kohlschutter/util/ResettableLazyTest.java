@@ -0,0 +1,62 @@
+/*
+ * kohlschutter-parent
+ *
+ * Copyright 2009-2026 Christian Kohlschütter
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.kohlschutter.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class ResettableLazyTest {
+  @Test
+  public void testInvalidate() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    ResettableLazy<Integer> lazy = ResettableLazy.of(calls::incrementAndGet);
+    assertEquals(0, lazy.getGeneration());
+    assertEquals(1, lazy.get());
+    assertEquals(1, lazy.get());
+
+    assertEquals(1, lazy.invalidate());
+    assertEquals(1, lazy.getGeneration());
+    assertEquals(1, calls.get());
+    assertEquals(2, lazy.get());
+
+    lazy.invalidate();
+    assertTrue(lazy.complete(42));
+    assertFalse(lazy.complete(43));
+    assertEquals(42, lazy.get());
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  public void testSnapshot() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    ResettableLazy<Integer> lazy = ResettableLazy.of(calls::incrementAndGet);
+    ResettableLazy.Snapshot<Integer> snapshot = lazy.getSnapshot();
+    assertEquals(1, snapshot.getValue());
+    assertEquals(0, snapshot.getGeneration());
+
+    lazy.invalidate();
+    snapshot = lazy.getSnapshot();
+    assertEquals(2, snapshot.getValue());
+    assertEquals(1, snapshot.getGeneration());
+  }
+}